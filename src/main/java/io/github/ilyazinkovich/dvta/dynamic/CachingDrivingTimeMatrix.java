@@ -0,0 +1,91 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Duration;
+
+/**
+ * Bounded cache in front of another matrix, keyed by the pair of location ids. Eviction is
+ * frequency-aware (W-TinyLFU), so repeatedly requested legs stay cached while one-off legs are
+ * evicted first.
+ */
+class CachingDrivingTimeMatrix implements IndexedDrivingTimeMatrix {
+
+  private final DrivingTimeMatrix drivingTimeMatrix;
+  private final LocationIndex locations;
+  private final LoadingCache<Long, Integer> cache;
+
+  /**
+   * @param drivingTimeMatrix matrix to load missing legs from
+   * @param locations index that produced the location ids of the requests
+   * @param maximumSize maximum number of cached legs
+   */
+  CachingDrivingTimeMatrix(
+      DrivingTimeMatrix drivingTimeMatrix, LocationIndex locations, long maximumSize) {
+    this.drivingTimeMatrix = drivingTimeMatrix;
+    this.locations = locations;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build(this::load);
+  }
+
+  @Override
+  public int drivingSeconds(int originId, int destinationId) {
+    return cache.get(key(originId, destinationId));
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    Integer originId = locations.id(origin);
+    Integer destinationId = locations.id(destination);
+    if (originId == null || destinationId == null) {
+      return drivingTimeMatrix.drivingTime(origin, destination);
+    }
+    return Duration.ofSeconds(drivingSeconds(originId, destinationId));
+  }
+
+  @Override
+  public boolean indexes(int locationId, LatLng location) {
+    return locationId >= 0 && locationId < locations.size()
+        && locations.location(locationId).equals(location);
+  }
+
+  /**
+   * Legs are truncated to whole seconds of the underlying matrix, which adds a second.
+   */
+  @Override
+  public long triangleSlackSeconds() {
+    long slack = drivingTimeMatrix.triangleSlackSeconds();
+    return slack < 0 ? -1 : slack + 1;
+  }
+
+  /**
+   * @return hits, misses, evictions and load latency of the cache
+   */
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  long size() {
+    cache.cleanUp();
+    return cache.estimatedSize();
+  }
+
+  private Integer load(Long key) {
+    int originId = (int) (key >>> 32);
+    int destinationId = (int) (long) key;
+    if (drivingTimeMatrix instanceof IndexedDrivingTimeMatrix) {
+      return ((IndexedDrivingTimeMatrix) drivingTimeMatrix)
+          .drivingSeconds(originId, destinationId);
+    }
+    return Math.toIntExact(drivingTimeMatrix
+        .drivingTime(locations.location(originId), locations.location(destinationId))
+        .getSeconds());
+  }
+
+  private static long key(int originId, int destinationId) {
+    return ((long) originId << 32) | (destinationId & 0xFFFFFFFFL);
+  }
+}
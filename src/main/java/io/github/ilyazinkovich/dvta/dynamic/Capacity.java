@@ -1,5 +1,7 @@
 package io.github.ilyazinkovich.dvta.dynamic;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 class Capacity {
@@ -12,6 +14,32 @@ class Capacity {
     this.unit = unit;
   }
 
+  /**
+   * @return total quantity per unit, indexed by the ordinal of the unit
+   */
+  static double[] vector(List<Capacity> capacities) {
+    double[] vector = new double[Unit.values().length];
+    for (Capacity capacity : capacities) {
+      vector[capacity.unit.ordinal()] += capacity.quantity;
+    }
+    return vector;
+  }
+
+  /**
+   * @return largest quantity per unit among the capacities of several vehicles, so a load above
+   *     it in any unit fits none of them
+   */
+  static double[] limits(Collection<List<Capacity>> vehicleCapacities) {
+    double[] limits = new double[Unit.values().length];
+    for (List<Capacity> capacities : vehicleCapacities) {
+      double[] vector = vector(capacities);
+      for (int unit = 0; unit < limits.length; unit++) {
+        limits[unit] = Math.max(limits[unit], vector[unit]);
+      }
+    }
+    return limits;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -0,0 +1,94 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.Arrays;
+
+/**
+ * Pairwise compatibility of the requests of a {@link RequestTable}, as one bitset row per
+ * handle with the handles of the requests it can share a vehicle with, see {@link RR}.
+ *
+ * <p>A trip is feasible only if every pair of its requests is, so a request extends a trip only
+ * if it is adjacent to all of its requests, which is one bit test per request of the trip.
+ */
+class CompatibilityGraph {
+
+  private long[][] rows;
+
+  CompatibilityGraph() {
+    this.rows = new long[64][];
+  }
+
+  /**
+   * Connects the handle with each of the partners, replacing what the handle was connected to.
+   */
+  void add(int handle, int[] partners) {
+    remove(handle);
+    int maxHandle = handle;
+    for (int partner : partners) {
+      maxHandle = Math.max(maxHandle, partner);
+    }
+    if (maxHandle >= rows.length) {
+      rows = Arrays.copyOf(rows, Math.max(maxHandle + 1, 2 * rows.length));
+    }
+    for (int partner : partners) {
+      set(handle, partner);
+      set(partner, handle);
+    }
+  }
+
+  /**
+   * Disconnects the handle from all of its partners, so it can be reused for another request.
+   */
+  void remove(int handle) {
+    if (handle >= rows.length || rows[handle] == null) {
+      return;
+    }
+    long[] row = rows[handle];
+    for (int word = 0; word < row.length; word++) {
+      for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+        int partner = word << 6 | Long.numberOfTrailingZeros(bits);
+        rows[partner][word(handle)] &= ~bit(handle);
+      }
+    }
+    rows[handle] = null;
+  }
+
+  /**
+   * @return whether the handle is adjacent to the request of every pick-up of the route, whose
+   *     stops have to carry the handles of the table
+   */
+  boolean adjacentToAll(int handle, Iterable<RouteStop> route) {
+    long[] row = handle < rows.length ? rows[handle] : null;
+    if (row == null) {
+      return false;
+    }
+    for (RouteStop stop : route) {
+      if (stop.type == RouteStop.Type.PICK_UP) {
+        int word = word(stop.handle);
+        if (word >= row.length || (row[word] & bit(stop.handle)) == 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void set(int handle, int partner) {
+    long[] row = rows[handle];
+    int word = word(partner);
+    if (row == null) {
+      row = new long[word + 1];
+    } else if (word >= row.length) {
+      row = Arrays.copyOf(row, Math.max(word + 1, 2 * row.length));
+    }
+    row[word] |= bit(partner);
+    rows[handle] = row;
+  }
+
+  private static int word(int handle) {
+    return handle >>> 6;
+  }
+
+  private static long bit(int handle) {
+    return 1L << handle;
+  }
+}
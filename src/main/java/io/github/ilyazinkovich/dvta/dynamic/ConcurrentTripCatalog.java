@@ -0,0 +1,169 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@link TripCatalog} that several threads can add requests to at the same time.
+ *
+ * <p>Every added request is published with the next version, and the trips an add generates
+ * are stored under that version, after which the watermark moves to it. An add extends the
+ * trips published up to the watermark it read, without holding any lock, and then publishes
+ * only if no other add published in the meantime. Otherwise it extends the trips published since
+ * and tries again. So the trips of a set of requests are generated exactly once, by the add of
+ * the request published last, which has seen the trips of all the others.
+ *
+ * <p>Readers take a {@link Snapshot} at the current watermark, which is a consistent catalog of
+ * the requests published up to it, while writers keep going.
+ */
+class ConcurrentTripCatalog {
+
+  private final int maxTripRequests;
+  private final Map<Request, Long> versions;
+  private final List<ConcurrentNavigableMap<Long, List<Trip>>> tripsPerRequestsCount;
+  private final ThreadLocal<TripPermutations> permutations;
+  private final Object publishLock;
+  private volatile long watermark;
+
+  ConcurrentTripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix) {
+    this(maxTripRequests, drivingTimeMatrix, null, null);
+  }
+
+  /**
+   * @param drivingTimeMatrix driving times, which have to be safe for concurrent reads
+   */
+  ConcurrentTripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
+    this.maxTripRequests = maxTripRequests;
+    this.versions = new ConcurrentHashMap<>();
+    this.tripsPerRequestsCount = new ArrayList<>();
+    for (int i = 0; i <= maxTripRequests; i++) {
+      tripsPerRequestsCount.add(new ConcurrentSkipListMap<>());
+    }
+    this.permutations = ThreadLocal.withInitial(() -> new TripPermutations(
+        maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits));
+    this.publishLock = new Object();
+  }
+
+  /**
+   * @return whether the request was added, which it is not if it is in the catalog already or
+   *     its own route fails
+   */
+  boolean add(Request request) {
+    if (versions.containsKey(request)) {
+      return false;
+    }
+    TripPermutations permutations = this.permutations.get();
+    RouteStop pickUp = new RouteStop(request, PICK_UP);
+    RouteStop dropOff = new RouteStop(request, DROP_OFF);
+    Trip single = permutations.single(request, pickUp, dropOff);
+    if (single == null) {
+      System.err.println(
+          "Failed to generate route - " + permutations.failureReason() + " - " + request);
+      return false;
+    }
+    List<List<Trip>> extended = new ArrayList<>();
+    for (int i = 0; i <= maxTripRequests; i++) {
+      extended.add(new ArrayList<>());
+    }
+    extended.get(1).add(single);
+    long seen = 0;
+    while (true) {
+      long current = watermark;
+      for (int i = 1; i < maxTripRequests; i++) {
+        for (List<Trip> trips :
+            tripsPerRequestsCount.get(i).subMap(seen, false, current, true).values()) {
+          for (Trip trip : trips) {
+            if (!trip.requests.contains(request)) {
+              extended.get(i + 1).addAll(permutations.of(trip, pickUp, dropOff));
+            }
+          }
+        }
+      }
+      seen = current;
+      synchronized (publishLock) {
+        if (watermark == seen) {
+          if (versions.containsKey(request)) {
+            return false;
+          }
+          long version = seen + 1;
+          for (int i = 1; i <= maxTripRequests; i++) {
+            if (!extended.get(i).isEmpty()) {
+              tripsPerRequestsCount.get(i)
+                  .put(version, Collections.unmodifiableList(extended.get(i)));
+            }
+          }
+          versions.put(request, version);
+          watermark = version;
+          return true;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return version of the last published request
+   */
+  long watermark() {
+    return watermark;
+  }
+
+  Snapshot snapshot() {
+    long current = watermark;
+    List<Request> requests = versions.entrySet().stream()
+        .filter(entry -> entry.getValue() <= current)
+        .sorted(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+    Map<Integer, Set<Trip>> trips = new HashMap<>();
+    long tripsCount = 0;
+    for (int i = 1; i <= maxTripRequests; i++) {
+      Set<Trip> tripsOfSize = new HashSet<>();
+      for (List<Trip> published : tripsPerRequestsCount.get(i).headMap(current, true).values()) {
+        tripsOfSize.addAll(published);
+        tripsCount += published.size();
+      }
+      trips.put(i, tripsOfSize);
+    }
+    return new Snapshot(current, requests, trips, tripsCount);
+  }
+
+  /**
+   * Catalog of the requests published up to a watermark.
+   */
+  static final class Snapshot {
+
+    final long watermark;
+    /**
+     * Requests in the order they were published.
+     */
+    final List<Request> requests;
+    final Map<Integer, Set<Trip>> tripsPerRequestsCount;
+    /**
+     * Number of trips as generated, which equals the size of the sets unless a trip was
+     * generated twice.
+     */
+    final long tripsCount;
+
+    Snapshot(long watermark, List<Request> requests, Map<Integer, Set<Trip>> tripsPerRequestsCount,
+        long tripsCount) {
+      this.watermark = watermark;
+      this.requests = requests;
+      this.tripsPerRequestsCount = tripsPerRequestsCount;
+      this.tripsCount = tripsCount;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contraction hierarchy over a {@link RoadGraph}. Nodes are contracted in the order of their edge
+ * difference, adding shortcuts where no witness path exists, and queries run a bidirectional
+ * Dijkstra that only relaxes edges towards more important nodes.
+ */
+class ContractionHierarchy {
+
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+  private static final int WITNESS_SETTLED_LIMIT = 500;
+
+  private final int nodesCount;
+  private final int[] forwardFirst;
+  private final int[] forwardTo;
+  private final int[] forwardSeconds;
+  private final int[] backwardFirst;
+  private final int[] backwardTo;
+  private final int[] backwardSeconds;
+  private final ThreadLocal<Search> forwardSearch;
+  private final ThreadLocal<Search> backwardSearch;
+
+  private ContractionHierarchy(int nodesCount,
+      int[] forwardFirst, int[] forwardTo, int[] forwardSeconds,
+      int[] backwardFirst, int[] backwardTo, int[] backwardSeconds) {
+    this.nodesCount = nodesCount;
+    this.forwardFirst = forwardFirst;
+    this.forwardTo = forwardTo;
+    this.forwardSeconds = forwardSeconds;
+    this.backwardFirst = backwardFirst;
+    this.backwardTo = backwardTo;
+    this.backwardSeconds = backwardSeconds;
+    this.forwardSearch = ThreadLocal.withInitial(() -> new Search(nodesCount));
+    this.backwardSearch = ThreadLocal.withInitial(() -> new Search(nodesCount));
+  }
+
+  static ContractionHierarchy build(RoadGraph graph) {
+    int nodesCount = graph.nodesCount();
+    List<Map<Integer, Integer>> out = edgeMaps(nodesCount);
+    List<Map<Integer, Integer>> in = edgeMaps(nodesCount);
+    for (int edge = 0; edge < graph.edgesCount(); edge++) {
+      int from = graph.edgeFrom[edge];
+      int to = graph.edgeTo[edge];
+      if (from != to) {
+        out.get(from).merge(to, graph.edgeSeconds[edge], Math::min);
+        in.get(to).merge(from, graph.edgeSeconds[edge], Math::min);
+      }
+    }
+    boolean[] contracted = new boolean[nodesCount];
+    int[] contractedNeighbours = new int[nodesCount];
+    List<Map<Integer, Integer>> upwardOut = edgeMaps(nodesCount);
+    List<Map<Integer, Integer>> upwardIn = edgeMaps(nodesCount);
+    Search witnessSearch = new Search(nodesCount);
+    Heap order = new Heap();
+    for (int node = 0; node < nodesCount; node++) {
+      order.push(priority(node, out, in, contracted, contractedNeighbours, witnessSearch), node);
+    }
+    while (!order.isEmpty()) {
+      int node = order.peekNode();
+      order.pop();
+      if (contracted[node]) {
+        continue;
+      }
+      int priority = priority(node, out, in, contracted, contractedNeighbours, witnessSearch);
+      if (!order.isEmpty() && priority > order.peekKey()) {
+        order.push(priority, node);
+        continue;
+      }
+      contract(node, out, in, contracted, witnessSearch, true);
+      upwardOut.get(node).putAll(out.get(node));
+      upwardIn.get(node).putAll(in.get(node));
+      for (int neighbour : out.get(node).keySet()) {
+        in.get(neighbour).remove(node);
+        contractedNeighbours[neighbour]++;
+      }
+      for (int neighbour : in.get(node).keySet()) {
+        out.get(neighbour).remove(node);
+        contractedNeighbours[neighbour]++;
+      }
+      out.get(node).clear();
+      in.get(node).clear();
+    }
+    int[] forwardFirst = new int[nodesCount + 1];
+    int[] backwardFirst = new int[nodesCount + 1];
+    for (int node = 0; node < nodesCount; node++) {
+      forwardFirst[node + 1] = forwardFirst[node] + upwardOut.get(node).size();
+      backwardFirst[node + 1] = backwardFirst[node] + upwardIn.get(node).size();
+    }
+    int[] forwardTo = new int[forwardFirst[nodesCount]];
+    int[] forwardSeconds = new int[forwardFirst[nodesCount]];
+    int[] backwardTo = new int[backwardFirst[nodesCount]];
+    int[] backwardSeconds = new int[backwardFirst[nodesCount]];
+    for (int node = 0; node < nodesCount; node++) {
+      fill(upwardOut.get(node), forwardFirst[node], forwardTo, forwardSeconds);
+      fill(upwardIn.get(node), backwardFirst[node], backwardTo, backwardSeconds);
+    }
+    return new ContractionHierarchy(nodesCount, forwardFirst, forwardTo, forwardSeconds,
+        backwardFirst, backwardTo, backwardSeconds);
+  }
+
+  int drivingSeconds(int origin, int destination) {
+    if (origin == destination) {
+      return 0;
+    }
+    Search forward = forwardSearch.get();
+    upwardSearch(forward, origin, forwardFirst, forwardTo, forwardSeconds);
+    int seconds = meet(forward, destination);
+    forward.reset();
+    return seconds;
+  }
+
+  /**
+   * Runs the upward search from the origin once and meets it with a backward search from every
+   * destination.
+   */
+  int[] drivingSeconds(int origin, int[] destinations) {
+    Search forward = forwardSearch.get();
+    upwardSearch(forward, origin, forwardFirst, forwardTo, forwardSeconds);
+    int[] seconds = new int[destinations.length];
+    for (int i = 0; i < destinations.length; i++) {
+      seconds[i] = destinations[i] == origin ? 0 : meet(forward, destinations[i]);
+    }
+    forward.reset();
+    return seconds;
+  }
+
+  int nodesCount() {
+    return nodesCount;
+  }
+
+  private int meet(Search forward, int destination) {
+    Search backward = backwardSearch.get();
+    int best = forward.distance[destination];
+    backward.push(destination, 0);
+    while (!backward.heap.isEmpty()) {
+      int distance = backward.heap.peekKey();
+      int node = backward.heap.peekNode();
+      backward.heap.pop();
+      if (distance >= best) {
+        break;
+      }
+      if (distance > backward.distance[node]) {
+        continue;
+      }
+      if (forward.distance[node] != UNREACHABLE) {
+        best = Math.min(best, forward.distance[node] + distance);
+      }
+      for (int edge = backwardFirst[node]; edge < backwardFirst[node + 1]; edge++) {
+        backward.push(backwardTo[edge], distance + backwardSeconds[edge]);
+      }
+    }
+    backward.reset();
+    return best;
+  }
+
+  private static void upwardSearch(
+      Search search, int origin, int[] first, int[] to, int[] seconds) {
+    search.push(origin, 0);
+    while (!search.heap.isEmpty()) {
+      int distance = search.heap.peekKey();
+      int node = search.heap.peekNode();
+      search.heap.pop();
+      if (distance > search.distance[node]) {
+        continue;
+      }
+      for (int edge = first[node]; edge < first[node + 1]; edge++) {
+        search.push(to[edge], distance + seconds[edge]);
+      }
+    }
+  }
+
+  private static int priority(int node, List<Map<Integer, Integer>> out,
+      List<Map<Integer, Integer>> in, boolean[] contracted, int[] contractedNeighbours,
+      Search witnessSearch) {
+    int shortcuts = contract(node, out, in, contracted, witnessSearch, false);
+    return shortcuts - out.get(node).size() - in.get(node).size() + contractedNeighbours[node];
+  }
+
+  private static int contract(int node, List<Map<Integer, Integer>> out,
+      List<Map<Integer, Integer>> in, boolean[] contracted, Search witnessSearch,
+      boolean addShortcuts) {
+    int shortcuts = 0;
+    int maxOut = 0;
+    for (int seconds : out.get(node).values()) {
+      maxOut = Math.max(maxOut, seconds);
+    }
+    for (Map.Entry<Integer, Integer> incoming : in.get(node).entrySet()) {
+      int source = incoming.getKey();
+      int sourceSeconds = incoming.getValue();
+      witness(witnessSearch, source, node, sourceSeconds + maxOut, out, contracted);
+      for (Map.Entry<Integer, Integer> outgoing : out.get(node).entrySet()) {
+        int target = outgoing.getKey();
+        int viaSeconds = sourceSeconds + outgoing.getValue();
+        if (target != source && witnessSearch.distance[target] > viaSeconds) {
+          shortcuts++;
+          if (addShortcuts) {
+            out.get(source).merge(target, viaSeconds, Math::min);
+            in.get(target).merge(source, viaSeconds, Math::min);
+          }
+        }
+      }
+      witnessSearch.reset();
+    }
+    if (addShortcuts) {
+      contracted[node] = true;
+    }
+    return shortcuts;
+  }
+
+  private static void witness(Search search, int source, int excluded, int maxSeconds,
+      List<Map<Integer, Integer>> out, boolean[] contracted) {
+    search.push(source, 0);
+    int settled = 0;
+    while (!search.heap.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+      int distance = search.heap.peekKey();
+      int node = search.heap.peekNode();
+      search.heap.pop();
+      if (distance > search.distance[node]) {
+        continue;
+      }
+      if (distance > maxSeconds) {
+        break;
+      }
+      settled++;
+      for (Map.Entry<Integer, Integer> edge : out.get(node).entrySet()) {
+        int next = edge.getKey();
+        if (next != excluded && !contracted[next]) {
+          search.push(next, distance + edge.getValue());
+        }
+      }
+    }
+  }
+
+  private static void fill(Map<Integer, Integer> edges, int first, int[] to, int[] seconds) {
+    int edge = first;
+    for (Map.Entry<Integer, Integer> entry : edges.entrySet()) {
+      to[edge] = entry.getKey();
+      seconds[edge] = entry.getValue();
+      edge++;
+    }
+  }
+
+  private static List<Map<Integer, Integer>> edgeMaps(int nodesCount) {
+    List<Map<Integer, Integer>> maps = new ArrayList<>(nodesCount);
+    for (int node = 0; node < nodesCount; node++) {
+      maps.add(new HashMap<>());
+    }
+    return maps;
+  }
+
+  private static class Search {
+
+    final int[] distance;
+    final Heap heap;
+    private int[] touched;
+    private int touchedCount;
+
+    Search(int nodesCount) {
+      this.distance = new int[nodesCount];
+      Arrays.fill(distance, UNREACHABLE);
+      this.heap = new Heap();
+      this.touched = new int[16];
+    }
+
+    void push(int node, int seconds) {
+      if (seconds < distance[node]) {
+        if (distance[node] == UNREACHABLE) {
+          if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+          }
+          touched[touchedCount++] = node;
+        }
+        distance[node] = seconds;
+        heap.push(seconds, node);
+      }
+    }
+
+    void reset() {
+      for (int i = 0; i < touchedCount; i++) {
+        distance[touched[i]] = UNREACHABLE;
+      }
+      touchedCount = 0;
+      heap.clear();
+    }
+  }
+
+  private static class Heap {
+
+    private long[] entries = new long[16];
+    private int size;
+
+    void push(int key, int node) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      long entry = ((long) key << 32) | node;
+      int i = size++;
+      while (i > 0 && entries[(i - 1) / 2] > entry) {
+        entries[i] = entries[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      entries[i] = entry;
+    }
+
+    void pop() {
+      long last = entries[--size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && entries[child + 1] < entries[child]) {
+          child++;
+        }
+        if (entries[child] >= last) {
+          break;
+        }
+        entries[i] = entries[child];
+        i = child;
+      }
+      entries[i] = last;
+    }
+
+    int peekKey() {
+      return (int) (entries[0] >>> 32);
+    }
+
+    int peekNode() {
+      return (int) entries[0];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+}
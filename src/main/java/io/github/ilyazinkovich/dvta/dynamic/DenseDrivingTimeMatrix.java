@@ -0,0 +1,108 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Driving times between the locations of a fixed set of requests, stored as seconds in a flat
+ * row-major array. Location ids of the requests are used as array indices, so they are expected
+ * to be dense, as produced by {@link LocationIndex}. Locations without an id, or with a negative
+ * one, are left to the fallback matrix.
+ */
+class DenseDrivingTimeMatrix implements IndexedDrivingTimeMatrix {
+
+  private final int size;
+  private final int[] seconds;
+  private final LatLng[] locations;
+  private final Map<LatLng, Integer> ids;
+  private final DrivingTimeMatrix fallback;
+
+  private DenseDrivingTimeMatrix(int size, int[] seconds, LatLng[] locations,
+      Map<LatLng, Integer> ids, DrivingTimeMatrix fallback) {
+    this.size = size;
+    this.seconds = seconds;
+    this.locations = locations;
+    this.ids = ids;
+    this.fallback = fallback;
+  }
+
+  static DenseDrivingTimeMatrix create(
+      Collection<Request> requests, DrivingTimeMatrix drivingTimeMatrix) {
+    Map<LatLng, Integer> ids = new HashMap<>();
+    for (Request request : requests) {
+      putId(ids, request.pickUpLocation, request.pickUpLocationId);
+      putId(ids, request.dropOffLocation, request.dropOffLocationId);
+    }
+    int size = ids.values().stream().mapToInt(id -> id + 1).max().orElse(0);
+    long cells = (long) size * size;
+    if (cells > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many locations for a dense matrix: " + size);
+    }
+    LatLng[] locations = new LatLng[size];
+    ids.forEach((location, id) -> locations[id] = location);
+    int[] seconds = new int[(int) cells];
+    for (int origin = 0; origin < size; origin++) {
+      for (int destination = 0; destination < size; destination++) {
+        if (origin != destination && locations[origin] != null
+            && locations[destination] != null) {
+          seconds[origin * size + destination] = Math.toIntExact(drivingTimeMatrix
+              .drivingTime(locations[origin], locations[destination]).getSeconds());
+        }
+      }
+    }
+    return new DenseDrivingTimeMatrix(size, seconds, locations, ids, drivingTimeMatrix);
+  }
+
+  private static void putId(Map<LatLng, Integer> ids, LatLng location, Integer id) {
+    if (id != null && id >= 0) {
+      ids.put(location, id);
+    }
+  }
+
+  @Override
+  public int drivingSeconds(int originId, int destinationId) {
+    if (!covers(originId) || !covers(destinationId)) {
+      throw new IllegalArgumentException(
+          "Location ids outside the matrix: " + originId + ", " + destinationId);
+    }
+    return seconds[originId * size + destinationId];
+  }
+
+  @Override
+  public boolean indexes(int locationId, LatLng location) {
+    return covers(locationId) && locations[locationId].equals(location);
+  }
+
+  private boolean covers(int locationId) {
+    return locationId >= 0 && locationId < size && locations[locationId] != null;
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    Integer originId = ids.get(origin);
+    Integer destinationId = ids.get(destination);
+    if (originId == null || destinationId == null) {
+      return fallback.drivingTime(origin, destination);
+    }
+    return Duration.ofSeconds(drivingSeconds(originId, destinationId));
+  }
+
+  /**
+   * Legs are truncated to whole seconds of the fallback matrix, which adds a second.
+   */
+  @Override
+  public long triangleSlackSeconds() {
+    long slack = fallback.triangleSlackSeconds();
+    return slack < 0 ? -1 : slack + 1;
+  }
+
+  Integer id(LatLng location) {
+    return ids.get(location);
+  }
+
+  int size() {
+    return size;
+  }
+}
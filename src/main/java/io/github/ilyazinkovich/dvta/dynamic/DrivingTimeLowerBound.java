@@ -0,0 +1,42 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap lower bound on the driving time: the straight-line distance at a maximum speed. It is
+ * admissible for any matrix whose vehicles never go faster than that speed along a straight
+ * line, and lets {@link RouteGenerator} reject stops without asking the matrix.
+ */
+class DrivingTimeLowerBound {
+
+  private final double maxSpeedInKmH;
+  private final AtomicLong savedLookups;
+
+  DrivingTimeLowerBound(double maxSpeedInKmH) {
+    this.maxSpeedInKmH = maxSpeedInKmH;
+    this.savedLookups = new AtomicLong();
+  }
+
+  long seconds(LatLng origin, LatLng destination) {
+    return (long) Math.floor(Routing.straightLineDistanceKm(origin, destination) * 3600
+        / maxSpeedInKmH);
+  }
+
+  /**
+   * @return the farthest straight-line distance that can be covered within the given seconds
+   */
+  double maxDistanceKm(long seconds) {
+    return seconds * maxSpeedInKmH / 3600;
+  }
+
+  void lookupSaved() {
+    savedLookups.incrementAndGet();
+  }
+
+  /**
+   * @return number of matrix lookups skipped because the bound already rejected the stop
+   */
+  long savedLookups() {
+    return savedLookups.get();
+  }
+}
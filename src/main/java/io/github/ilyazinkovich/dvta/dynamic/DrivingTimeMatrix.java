@@ -5,4 +5,26 @@ import java.time.Duration;
 interface DrivingTimeMatrix {
 
   Duration drivingTime(LatLng origin, LatLng destination);
+
+  /**
+   * Fills {@code seconds} with the driving times from every origin to every destination, row by
+   * row: the time from {@code origins[i]} to {@code destinations[j]} is stored at
+   * {@code i * destinations.length + j}.
+   */
+  default void drivingTimes(LatLng[] origins, LatLng[] destinations, long[] seconds) {
+    for (int i = 0; i < origins.length; i++) {
+      for (int j = 0; j < destinations.length; j++) {
+        seconds[i * destinations.length + j] =
+            drivingTime(origins[i], destinations[j]).getSeconds();
+      }
+    }
+  }
+
+  /**
+   * @return number of seconds by which a leg may exceed a detour over any third location, or
+   *     {@code -1} if the matrix does not bound it
+   */
+  default long triangleSlackSeconds() {
+    return -1;
+  }
 }
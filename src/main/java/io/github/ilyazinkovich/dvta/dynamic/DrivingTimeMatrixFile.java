@@ -0,0 +1,95 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Binary driving-time matrix file, read back by {@link MappedDrivingTimeMatrix}.
+ *
+ * <p>Layout: a header (magic, version, cell size in bytes, locations count), then the location
+ * index (latitude and longitude of every location id), then the row-major matrix of travel
+ * seconds. 16-bit cells are unsigned and saturate at {@value #MAX_SHORT_SECONDS} seconds.
+ */
+class DrivingTimeMatrixFile {
+
+  static final int MAGIC = 0x44544D58;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int LOCATION_BYTES = 16;
+  static final int MAX_SHORT_SECONDS = 0xFFFF;
+
+  static long cellsOffset(int locationsCount) {
+    return HEADER_BYTES + (long) locationsCount * LOCATION_BYTES;
+  }
+
+  /**
+   * Computes the driving times between all locations of the index in parallel and writes them.
+   *
+   * @param path file to write
+   * @param locations locations, the file uses their ids as row and column indices
+   * @param drivingTimeMatrix matrix to compute the driving times with
+   * @param cellBytes size of a cell, 2 or 4 bytes
+   */
+  static void write(
+      Path path, LocationIndex locations, DrivingTimeMatrix drivingTimeMatrix, int cellBytes) {
+    if (cellBytes != Short.BYTES && cellBytes != Integer.BYTES) {
+      throw new IllegalArgumentException("Unsupported cell size: " + cellBytes);
+    }
+    int size = locations.size();
+    try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate((int) cellsOffset(size));
+      header.putInt(MAGIC).putInt(VERSION).putInt(cellBytes).putInt(size);
+      for (int id = 0; id < size; id++) {
+        LatLng location = locations.location(id);
+        header.putDouble(location.lat).putDouble(location.lng);
+      }
+      header.flip();
+      writeFully(channel, header, 0);
+      IntStream.range(0, size).parallel().forEach(origin -> {
+        ByteBuffer row = ByteBuffer.allocate(size * cellBytes);
+        for (int destination = 0; destination < size; destination++) {
+          long seconds = drivingSeconds(drivingTimeMatrix, locations, origin, destination);
+          if (cellBytes == Short.BYTES) {
+            row.putShort((short) Math.min(seconds, MAX_SHORT_SECONDS));
+          } else {
+            row.putInt(Math.toIntExact(seconds));
+          }
+        }
+        row.flip();
+        writeFully(channel, row, cellsOffset(size) + (long) origin * size * cellBytes);
+      });
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write driving-time matrix file.", e);
+    }
+  }
+
+  private static long drivingSeconds(DrivingTimeMatrix drivingTimeMatrix,
+      LocationIndex locations, int origin, int destination) {
+    if (origin == destination) {
+      return 0;
+    }
+    if (drivingTimeMatrix instanceof IndexedDrivingTimeMatrix) {
+      return ((IndexedDrivingTimeMatrix) drivingTimeMatrix).drivingSeconds(origin, destination);
+    }
+    return drivingTimeMatrix
+        .drivingTime(locations.location(origin), locations.location(destination))
+        .getSeconds();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) {
+    try {
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write driving-time matrix file.", e);
+    }
+  }
+}
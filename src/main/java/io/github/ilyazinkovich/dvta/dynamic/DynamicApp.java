@@ -6,7 +6,8 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 public class DynamicApp {
 
@@ -20,12 +21,17 @@ public class DynamicApp {
     GLOBAL_TIME = getGlobalTime(requests);
     int vehiclesCount = 100;
     List<Vehicle> vehicles = VehiclesGenerator.generate(requests, vehiclesCount, random);
-    DrivingTimeMatrix drivingTimeMatrix = new StraightLineDrivingTimeMatrix();
+    DrivingTimeMatrix drivingTimeMatrix =
+        DenseDrivingTimeMatrix.create(requests, new StraightLineDrivingTimeMatrix());
+    double[] capacityLimits = Capacity.limits(
+        vehicles.stream().map(vehicle -> vehicle.capacities).collect(Collectors.toList()));
     System.out.println("TC");
     for (int i = 0; i < 100; i++) {
-      TripCatalog tripCatalog = new TripCatalog(3, drivingTimeMatrix);
+      TripCatalog tripCatalog = new TripCatalog(
+          3, drivingTimeMatrix, null, capacityLimits, ForkJoinPool.commonPool());
       long start = System.currentTimeMillis();
       for (Request request : requests) {
+        tripCatalog.expire(request.requestTime);
         tripCatalog.add(request);
       }
       System.out.println(System.currentTimeMillis() - start);
@@ -37,10 +43,12 @@ public class DynamicApp {
     for (int i = 0; i < 100; i++) {
       RR rr = new RR(new HashSet<>());
       long start = System.currentTimeMillis();
-      Set<Request> processedRequests = new HashSet<>();
+      PendingRequestIndex pendingRequests = new PendingRequestIndex(
+          new DrivingTimeLowerBound(25.0), Duration.ofMinutes(5), 1.0);
       for (Request request : requests) {
-        rr.add(request, processedRequests, drivingTimeMatrix);
-        processedRequests.add(request);
+        pendingRequests.expire(request.requestTime);
+        rr.add(request, pendingRequests, drivingTimeMatrix);
+        pendingRequests.insert(request);
       }
       System.out.println(System.currentTimeMillis() - start);
     }
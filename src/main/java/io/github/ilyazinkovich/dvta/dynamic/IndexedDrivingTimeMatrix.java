@@ -0,0 +1,19 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+interface IndexedDrivingTimeMatrix extends DrivingTimeMatrix {
+
+  int drivingSeconds(int originId, int destinationId);
+
+  /**
+   * @return whether the id is a location of this matrix, and the given one, so that legs from or
+   *     to it can be looked up by id, which callers check before falling back to the location;
+   *     none by default, as only the matrix knows which of its ids are valid
+   */
+  default boolean indexes(int locationId, LatLng location) {
+    return false;
+  }
+
+  default int drivingSeconds(int originId, int destinationId, long departureEpochSecond) {
+    return drivingSeconds(originId, destinationId);
+  }
+}
@@ -1,10 +1,51 @@
 package io.github.ilyazinkovich.dvta.dynamic;
 
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.PICK_UP_AFTER_TIME_WINDOW_END;
+
+import io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Positions of a pick-up and a drop-off inserted into a route, in the order of pick-up position
+ * and then drop-off position. The positions are those of the stops in the resulting route, so
+ * route stops before the pick-up keep their index, stops between the pick-up and the drop-off
+ * are shifted by one and stops after the drop-off by two.
+ *
+ * <p>{@link #failed(int, FailureReason)} reports the stop at which the route of the current
+ * positions failed and skips the positions that fail for the same reason:
+ * <ul>
+ *   <li>a failed stop before the pick-up is part of every later route, so nothing is left;</li>
+ *   <li>a failed stop between the pick-up and the drop-off is part of every route with a later
+ *   drop-off, so the enumeration moves on to the next pick-up position;</li>
+ *   <li>a pick-up or drop-off after its time window end is only reached later when inserted
+ *   further back, so the remaining pick-up positions or drop-off positions are skipped.</li>
+ * </ul>
+ * The last rule only holds when every stop is handled on its own, as merged stops at the same
+ * location may move the route time backwards, and when a detour over a route stop never saves
+ * more driving time than serving the stop takes and leaving later never means arriving earlier,
+ * so it is opt-in, see {@link TripPermutations#monotone}.
+ */
 class InsertionPoints {
 
+  private final int routeSize;
+  private final boolean monotone;
+  private int pickUp;
+  private int dropOff;
+  private boolean done;
+
+  /**
+   * @param routeSize number of stops of the route the pick-up and the drop-off are inserted into
+   * @param monotone whether stops after their time window end prune later positions
+   */
+  InsertionPoints(int routeSize, boolean monotone) {
+    this.routeSize = routeSize;
+    this.monotone = monotone;
+    this.pickUp = 0;
+    this.dropOff = 0;
+  }
+
   static List<int[]> generate(int start, int end) {
     List<int[]> points = new ArrayList<>();
     for (int i = start; i <= end; i++) {
@@ -14,4 +55,43 @@ class InsertionPoints {
     }
     return points;
   }
+
+  /**
+   * @return whether there are positions left, which then become the current ones
+   */
+  boolean next() {
+    if (done) {
+      return false;
+    }
+    dropOff++;
+    if (dropOff > routeSize + 1) {
+      pickUp++;
+      dropOff = pickUp + 1;
+    }
+    done = pickUp > routeSize;
+    return !done;
+  }
+
+  int pickUp() {
+    return pickUp;
+  }
+
+  int dropOff() {
+    return dropOff;
+  }
+
+  /**
+   * Skips the positions that fail like the current ones.
+   *
+   * @param stopIndex index of the failed stop in the route of the current positions
+   */
+  void failed(int stopIndex, FailureReason reason) {
+    if (stopIndex < pickUp
+        || monotone && stopIndex == pickUp && reason == PICK_UP_AFTER_TIME_WINDOW_END) {
+      done = true;
+    } else if (stopIndex < dropOff
+        || monotone && stopIndex == dropOff && reason == DROP_OFF_AFTER_TIME_WINDOW_END) {
+      dropOff = routeSize + 1;
+    }
+  }
 }
@@ -0,0 +1,39 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class LocationIndex {
+
+  private final Map<LatLng, Integer> ids;
+  private final List<LatLng> locations;
+
+  LocationIndex() {
+    this.ids = new HashMap<>();
+    this.locations = new ArrayList<>();
+  }
+
+  int intern(LatLng location) {
+    Integer id = ids.get(location);
+    if (id == null) {
+      id = locations.size();
+      ids.put(location, id);
+      locations.add(location);
+    }
+    return id;
+  }
+
+  Integer id(LatLng location) {
+    return ids.get(location);
+  }
+
+  LatLng location(int id) {
+    return locations.get(id);
+  }
+
+  int size() {
+    return locations.size();
+  }
+}
@@ -0,0 +1,111 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.DrivingTimeMatrixFile.HEADER_BYTES;
+import static io.github.ilyazinkovich.dvta.dynamic.DrivingTimeMatrixFile.MAGIC;
+import static io.github.ilyazinkovich.dvta.dynamic.DrivingTimeMatrixFile.VERSION;
+import static io.github.ilyazinkovich.dvta.dynamic.DrivingTimeMatrixFile.cellsOffset;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Serves lookups straight from a memory-mapped {@link DrivingTimeMatrixFile}. The cells are
+ * mapped in segments of whole rows, so matrices larger than 2 GB are supported, and they stay in
+ * the page cache shared by all processes that map the same file.
+ */
+class MappedDrivingTimeMatrix implements IndexedDrivingTimeMatrix {
+
+  private final int size;
+  private final int cellBytes;
+  private final int rowsPerSegment;
+  private final MappedByteBuffer[] segments;
+  private final LocationIndex locations;
+
+  private MappedDrivingTimeMatrix(int size, int cellBytes, int rowsPerSegment,
+      MappedByteBuffer[] segments, LocationIndex locations) {
+    this.size = size;
+    this.cellBytes = cellBytes;
+    this.rowsPerSegment = rowsPerSegment;
+    this.segments = segments;
+    this.locations = locations;
+  }
+
+  static MappedDrivingTimeMatrix open(Path path) {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer header = channel.map(READ_ONLY, 0, HEADER_BYTES);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IllegalArgumentException("Not a driving-time matrix file: " + path);
+      }
+      int cellBytes = header.getInt();
+      int size = header.getInt();
+      ByteBuffer index = channel.map(READ_ONLY, HEADER_BYTES, cellsOffset(size) - HEADER_BYTES);
+      LocationIndex locations = new LocationIndex();
+      for (int id = 0; id < size; id++) {
+        locations.intern(new LatLng(index.getDouble(), index.getDouble()));
+      }
+      long rowBytes = (long) Math.max(size, 1) * cellBytes;
+      int rowsPerSegment = (int) Math.max(1, Math.min(size, Integer.MAX_VALUE / rowBytes));
+      MappedByteBuffer[] segments =
+          new MappedByteBuffer[(size + rowsPerSegment - 1) / rowsPerSegment];
+      for (int segment = 0; segment < segments.length; segment++) {
+        int rows = Math.min(rowsPerSegment, size - segment * rowsPerSegment);
+        segments[segment] = channel.map(READ_ONLY,
+            cellsOffset(size) + segment * rowsPerSegment * rowBytes, rows * rowBytes);
+      }
+      return new MappedDrivingTimeMatrix(size, cellBytes, rowsPerSegment, segments, locations);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to map driving-time matrix file.", e);
+    }
+  }
+
+  @Override
+  public int drivingSeconds(int originId, int destinationId) {
+    if (!covers(originId) || !covers(destinationId)) {
+      throw new IllegalArgumentException(
+          "Location ids outside the matrix: " + originId + ", " + destinationId);
+    }
+    MappedByteBuffer segment = segments[originId / rowsPerSegment];
+    int cell = ((originId % rowsPerSegment) * size + destinationId) * cellBytes;
+    if (cellBytes == Short.BYTES) {
+      return Short.toUnsignedInt(segment.getShort(cell));
+    }
+    return segment.getInt(cell);
+  }
+
+  @Override
+  public boolean indexes(int locationId, LatLng location) {
+    return covers(locationId) && locations.location(locationId).equals(location);
+  }
+
+  private boolean covers(int locationId) {
+    return locationId >= 0 && locationId < size;
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    Integer originId = locations.id(origin);
+    Integer destinationId = locations.id(destination);
+    if (originId == null || destinationId == null) {
+      throw new IllegalArgumentException(
+          "Unknown location: " + (originId == null ? origin : destination));
+    }
+    return Duration.ofSeconds(drivingSeconds(originId, destinationId));
+  }
+
+  /**
+   * @return index of the locations stored in the file, to intern request locations against
+   */
+  LocationIndex locations() {
+    return locations;
+  }
+
+  int size() {
+    return size;
+  }
+}
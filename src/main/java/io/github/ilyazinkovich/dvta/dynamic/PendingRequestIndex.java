@@ -0,0 +1,295 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Spatiotemporal index of pending requests for {@link RR} pairing. Requests are bucketed by the
+ * start of their pick-up time window and then by the grid cell of their pick-up location.
+ *
+ * <p>Every route of a pair starts at the pick-up time window start of one request and reaches
+ * the pick-up of the other no earlier than the lower-bound driving time later. That pick-up has
+ * to happen before its time window end and early enough to still reach the drop-off before the
+ * drop-off time window end, so a pair can only match if one request can reach the other in time.
+ * If the second pick-up comes before the first drop-off, the first drop-off is also reached from
+ * the second pick-up, no earlier than its time window start. Otherwise the two requests are
+ * served one after the other, and the second pick-up is reached from the first drop-off. The
+ * windows do not have to overlap then, but the time between the start of one and the latest
+ * pick-up of the other still bounds how far apart the pick-ups can be.
+ * {@link #candidates(Request)} derives that radius per time bucket, only visits the cells within
+ * it, and returns the requests that pass the checks plus the requests whose windows are
+ * open-ended. Buckets whose drop-offs are all due before the request opens can only be served
+ * before it, so they are searched with the radius of that direction alone, and skipped when none
+ * of their drop-offs can be made before the request's latest pick-up.
+ */
+class PendingRequestIndex {
+
+  private static final double KM_PER_DEGREE = Routing.EARTH_RADIUS * Math.PI / 180;
+  private static final double MIN_COS_LAT = 0.01;
+  /**
+   * Covers whole-second rounding of instants and of the lower bound summed over legs.
+   */
+  private static final long SLACK_SECONDS = 5;
+
+  private final DrivingTimeLowerBound drivingTimeLowerBound;
+  private final long bucketSeconds;
+  private final double cellDegrees;
+  private final Map<Long, Bucket> buckets;
+  private final Set<Request> unbounded;
+  private final PriorityQueue<Request> dispatchTimeouts;
+  private long maxWindowSeconds;
+  private int size;
+
+  /**
+   * @param drivingTimeLowerBound admissible lower bound of the driving time matrix used for
+   *     pairing
+   * @param bucket length of the time buckets of pick-up time window starts
+   * @param cellKm side of the grid cells of pick-up locations
+   */
+  PendingRequestIndex(
+      DrivingTimeLowerBound drivingTimeLowerBound, Duration bucket, double cellKm) {
+    this.drivingTimeLowerBound = drivingTimeLowerBound;
+    this.bucketSeconds = Math.max(1, bucket.getSeconds());
+    this.cellDegrees = cellKm / KM_PER_DEGREE;
+    this.buckets = new TreeMap<>();
+    this.unbounded = new LinkedHashSet<>();
+    this.dispatchTimeouts =
+        new PriorityQueue<>(Comparator.comparing((Request request) -> request.dispatchTimeout));
+  }
+
+  void insert(Request request) {
+    Entry entry = entry(request);
+    if (entry == null) {
+      unbounded.add(request);
+    } else {
+      buckets.computeIfAbsent(Math.floorDiv(entry.start, bucketSeconds), key -> new Bucket())
+          .add(cellKey(request.pickUpLocation), entry);
+      maxWindowSeconds = Math.max(maxWindowSeconds, entry.latest - entry.start);
+    }
+    if (request.dispatchTimeout != null) {
+      dispatchTimeouts.add(request);
+    }
+    size++;
+  }
+
+  boolean remove(Request request) {
+    if (unbounded.remove(request)) {
+      size--;
+      return true;
+    }
+    Entry entry = entry(request);
+    if (entry == null) {
+      return false;
+    }
+    long bucketKey = Math.floorDiv(entry.start, bucketSeconds);
+    Bucket bucket = buckets.get(bucketKey);
+    if (bucket == null) {
+      return false;
+    }
+    Map<Long, List<Entry>> cells = bucket.cells;
+    long cellKey = cellKey(request.pickUpLocation);
+    List<Entry> cell = cells.get(cellKey);
+    if (cell == null || !cell.removeIf(candidate -> candidate.request.equals(request))) {
+      return false;
+    }
+    if (cell.isEmpty()) {
+      cells.remove(cellKey);
+      if (cells.isEmpty()) {
+        buckets.remove(bucketKey);
+      }
+    }
+    size--;
+    return true;
+  }
+
+  /**
+   * Removes the requests whose dispatch timeout is not after the given time. Removed requests
+   * stay in the timeout queue until they are due and are skipped then.
+   *
+   * @return expired requests
+   */
+  List<Request> expire(Instant now) {
+    List<Request> expired = new ArrayList<>();
+    while (!dispatchTimeouts.isEmpty() && !dispatchTimeouts.peek().dispatchTimeout.isAfter(now)) {
+      Request request = dispatchTimeouts.poll();
+      if (remove(request)) {
+        expired.add(request);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return indexed requests that can possibly be paired with the request
+   */
+  List<Request> candidates(Request request) {
+    List<Request> candidates = new ArrayList<>(unbounded);
+    Entry entry = entry(request);
+    if (entry == null) {
+      buckets.values().forEach(bucket -> bucket.cells.values()
+          .forEach(cell -> cell.forEach(candidate -> candidates.add(candidate.request))));
+      return candidates;
+    }
+    for (Map.Entry<Long, Bucket> bucket : buckets.entrySet()) {
+      long minStart = bucket.getKey() * bucketSeconds;
+      long maxStart = minStart + bucketSeconds - 1;
+      long maxLowerBound = entry.latest - minStart;
+      if (bucket.getValue().latestDropOff >= entry.start - SLACK_SECONDS) {
+        maxLowerBound = Math.max(maxLowerBound, maxStart + maxWindowSeconds - entry.start);
+      } else if (bucket.getValue().earliestDropOff > entry.latest + SLACK_SECONDS) {
+        continue;
+      }
+      maxLowerBound += SLACK_SECONDS;
+      if (maxLowerBound >= 0) {
+        addCandidates(entry, bucket.getValue().cells, maxLowerBound, candidates);
+      }
+    }
+    return candidates;
+  }
+
+  int size() {
+    return size;
+  }
+
+  DrivingTimeLowerBound drivingTimeLowerBound() {
+    return drivingTimeLowerBound;
+  }
+
+  private void addCandidates(Entry entry, Map<Long, List<Entry>> cells, long maxLowerBound,
+      List<Request> candidates) {
+    double radiusDegrees =
+        drivingTimeLowerBound.maxDistanceKm(maxLowerBound + 1) / KM_PER_DEGREE;
+    LatLng location = entry.request.pickUpLocation;
+    double maxAbsLat = Math.min(90, Math.abs(location.lat) + radiusDegrees);
+    double cosLat = Math.max(MIN_COS_LAT, Math.cos(Math.toRadians(maxAbsLat)));
+    double lngDegrees = Math.min(180, radiusDegrees / cosLat);
+    long minRow = cell(location.lat - radiusDegrees) - 1;
+    long maxRow = cell(location.lat + radiusDegrees) + 1;
+    long minColumn = cell(location.lng - lngDegrees) - 1;
+    long maxColumn = cell(location.lng + lngDegrees) + 1;
+    if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > cells.size()) {
+      for (List<Entry> cell : cells.values()) {
+        addCandidates(entry, cell, candidates);
+      }
+      return;
+    }
+    for (long row = minRow; row <= maxRow; row++) {
+      for (long column = minColumn; column <= maxColumn; column++) {
+        List<Entry> cell = cells.get(key(row, column));
+        if (cell != null) {
+          addCandidates(entry, cell, candidates);
+        }
+      }
+    }
+  }
+
+  private void addCandidates(Entry entry, List<Entry> cell, List<Request> candidates) {
+    for (Entry candidate : cell) {
+      if (reaches(entry, candidate) || reaches(candidate, entry)) {
+        candidates.add(candidate.request);
+      }
+    }
+  }
+
+  /**
+   * @return whether the route that picks up {@code from} first can also pick up {@code to}, either
+   *     before dropping {@code from} off or after
+   */
+  private boolean reaches(Entry from, Entry to) {
+    long pickUp = from.start + drivingTimeLowerBound.seconds(
+        from.request.pickUpLocation, to.request.pickUpLocation);
+    if (pickUp > to.latest + SLACK_SECONDS) {
+      return false;
+    }
+    long dropOffAfterPickUp = Math.max(pickUp, to.start) + drivingTimeLowerBound.seconds(
+        to.request.pickUpLocation, from.request.dropOffLocation);
+    if (dropOffAfterPickUp - SLACK_SECONDS <= from.dropOffEnd) {
+      return true;
+    }
+    long pickUpAfterDropOff = from.earliestDropOff + drivingTimeLowerBound.seconds(
+        from.request.dropOffLocation, to.request.pickUpLocation);
+    return pickUpAfterDropOff <= to.latest + SLACK_SECONDS;
+  }
+
+  /**
+   * @return pick-up time window start, latest feasible pick-up arrival, earliest drop-off arrival
+   *     and drop-off time window end of the request, or {@code null} if the start or the latest
+   *     pick-up is unbounded
+   */
+  private Entry entry(Request request) {
+    if (request.pickUpTimeWindowStart == null) {
+      return null;
+    }
+    long rideSeconds =
+        drivingTimeLowerBound.seconds(request.pickUpLocation, request.dropOffLocation);
+    Instant latest = request.pickUpTimeWindowEnd;
+    if (request.dropOffTimeWindowEnd != null) {
+      Instant latestForDropOff = request.dropOffTimeWindowEnd.minusSeconds(rideSeconds);
+      if (latest == null || latestForDropOff.isBefore(latest)) {
+        latest = latestForDropOff;
+      }
+    }
+    if (latest == null) {
+      return null;
+    }
+    long start = request.pickUpTimeWindowStart.getEpochSecond();
+    return new Entry(request, start, latest.getEpochSecond(), start + rideSeconds,
+        request.dropOffTimeWindowEnd == null
+            ? Long.MAX_VALUE : request.dropOffTimeWindowEnd.getEpochSecond());
+  }
+
+  private long cellKey(LatLng location) {
+    return key(cell(location.lat), cell(location.lng));
+  }
+
+  private long cell(double degrees) {
+    return (long) Math.floor(degrees / cellDegrees);
+  }
+
+  private static long key(long row, long column) {
+    return (row << 32) ^ (column & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Requests of one time bucket by grid cell. The drop-off bounds cover every request ever added,
+   * so they stay conservative after removals.
+   */
+  private static final class Bucket {
+
+    final Map<Long, List<Entry>> cells = new HashMap<>();
+    long earliestDropOff = Long.MAX_VALUE;
+    long latestDropOff = Long.MIN_VALUE;
+
+    void add(long cellKey, Entry entry) {
+      cells.computeIfAbsent(cellKey, key -> new ArrayList<>()).add(entry);
+      earliestDropOff = Math.min(earliestDropOff, entry.earliestDropOff);
+      latestDropOff = Math.max(latestDropOff, entry.dropOffEnd);
+    }
+  }
+
+  private static final class Entry {
+
+    final Request request;
+    final long start;
+    final long latest;
+    final long earliestDropOff;
+    final long dropOffEnd;
+
+    Entry(Request request, long start, long latest, long earliestDropOff, long dropOffEnd) {
+      this.request = request;
+      this.start = start;
+      this.latest = latest;
+      this.earliestDropOff = earliestDropOff;
+      this.dropOffEnd = dropOffEnd;
+    }
+  }
+}
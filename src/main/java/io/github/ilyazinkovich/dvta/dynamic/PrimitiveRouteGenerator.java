@@ -0,0 +1,634 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.CAPACITY_EXCEEDED;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.NO_PICK_UP_FOR_DROP_OFF;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.PICK_UP_AFTER_TIME_WINDOW_END;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.State.DROP;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.State.FAILED;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.State.INITIAL;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.State.PICK;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
+
+import io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason;
+import io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.State;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+/**
+ * {@link RouteGenerator} on primitive state. Times and durations are kept as {@code long}
+ * nanoseconds, so results are identical to {@link RouteGenerator} down to the nanosecond, and
+ * stops, waits and delays live in arrays that grow once and are reused after {@link #reset}.
+ * Adding a stop allocates nothing unless the driving time matrix does.
+ *
+ * <p>The arrays are only appended to, so a {@link Checkpoint} of the counters and the scalar
+ * state is enough to {@link #restore} a route prefix and branch off it again. The
+ * {@link StopState} of every stop of a route is enough to {@link #resume} it on any generator.
+ */
+class PrimitiveRouteGenerator {
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final DrivingTimeMatrix drivingTimeMatrix;
+  private final IndexedDrivingTimeMatrix indexedDrivingTimeMatrix;
+  private final TimeDependentDrivingTimeMatrix timeDependentDrivingTimeMatrix;
+  private final DrivingTimeLowerBound drivingTimeLowerBound;
+  private final double[] capacityLimits;
+  private final double[] load;
+  private RouteStop[] stops;
+  private long[] arrivals;
+  private int stopsCount;
+  private Request[] requests;
+  private int requestsCount;
+  private long[] extraWait;
+  private int extraWaitCount;
+  private long[] dropOffDelays;
+  private int dropOffDelaysCount;
+  private FailureReason failureReason;
+  private int failedStopIndex;
+  private long time;
+  private long waitTime;
+  private long serviceTime;
+  private State state;
+
+  PrimitiveRouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix) {
+    this(time, drivingTimeMatrix, null);
+  }
+
+  PrimitiveRouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound) {
+    this(time, drivingTimeMatrix, drivingTimeLowerBound, null);
+  }
+
+  /**
+   * @param capacityLimits optional largest load per unit, see {@link Capacity#vector}
+   */
+  PrimitiveRouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
+    this.drivingTimeMatrix = drivingTimeMatrix;
+    this.indexedDrivingTimeMatrix = drivingTimeMatrix instanceof IndexedDrivingTimeMatrix
+        ? (IndexedDrivingTimeMatrix) drivingTimeMatrix : null;
+    this.timeDependentDrivingTimeMatrix =
+        drivingTimeMatrix instanceof TimeDependentDrivingTimeMatrix
+            ? (TimeDependentDrivingTimeMatrix) drivingTimeMatrix : null;
+    this.drivingTimeLowerBound = drivingTimeLowerBound;
+    this.capacityLimits = capacityLimits;
+    this.load = new double[Capacity.Unit.values().length];
+    this.stops = new RouteStop[8];
+    this.arrivals = new long[8];
+    this.requests = new Request[4];
+    this.extraWait = new long[8];
+    this.dropOffDelays = new long[4];
+    reset(time);
+  }
+
+  /**
+   * Clears the route and starts a new one at the given time, keeping the allocated arrays. A
+   * {@code null} time is only valid for routes starting with a request without pick-up time
+   * window, which never get a time.
+   */
+  PrimitiveRouteGenerator reset(Instant time) {
+    Arrays.fill(stops, 0, stopsCount, null);
+    Arrays.fill(requests, 0, requestsCount, null);
+    stopsCount = 0;
+    requestsCount = 0;
+    extraWaitCount = 0;
+    dropOffDelaysCount = 0;
+    Arrays.fill(load, 0);
+    failureReason = null;
+    failedStopIndex = -1;
+    this.time = time == null ? 0 : nanos(time);
+    waitTime = 0;
+    serviceTime = 0;
+    state = INITIAL;
+    return this;
+  }
+
+  /**
+   * Saves the current route into the given checkpoint.
+   */
+  Checkpoint checkpoint(Checkpoint checkpoint) {
+    checkpoint.stopsCount = stopsCount;
+    checkpoint.requestsCount = requestsCount;
+    checkpoint.extraWaitCount = extraWaitCount;
+    checkpoint.dropOffDelaysCount = dropOffDelaysCount;
+    System.arraycopy(load, 0, checkpoint.load, 0, load.length);
+    checkpoint.failureReason = failureReason;
+    checkpoint.failedStopIndex = failedStopIndex;
+    checkpoint.time = time;
+    checkpoint.waitTime = waitTime;
+    checkpoint.serviceTime = serviceTime;
+    checkpoint.state = state;
+    return checkpoint;
+  }
+
+  /**
+   * Saves the state the last stop left behind into the given stop state. The last stop must not
+   * have failed.
+   */
+  StopState stopState(StopState stopState) {
+    RouteStop stop = stops[stopsCount - 1];
+    stopState.stop = stop;
+    stopState.time = time;
+    stopState.waitTime = waitTime;
+    stopState.serviceTime = serviceTime;
+    stopState.extraWait = appends(stop) ? extraWait[extraWaitCount - 1] : 0;
+    stopState.dropOffDelay = appends(stop) && stop.type == DROP_OFF
+        ? dropOffDelays[dropOffDelaysCount - 1] : 0;
+    return stopState;
+  }
+
+  /**
+   * Replaces the route with the one of the stop states, taken after each of its stops in order,
+   * without evaluating any of them again. The requests and the load are rebuilt from the stops.
+   */
+  PrimitiveRouteGenerator resume(StopState[] route, int length) {
+    reset(null);
+    stops = grow(stops, length);
+    arrivals = grow(arrivals, length);
+    requests = grow(requests, length);
+    extraWait = grow(extraWait, length);
+    dropOffDelays = grow(dropOffDelays, length);
+    for (int k = 0; k < length; k++) {
+      StopState stopState = route[k];
+      RouteStop stop = stopState.stop;
+      stops[k] = stop;
+      arrivals[k] = stopState.time;
+      if (!appends(stop)) {
+        continue;
+      }
+      extraWait[extraWaitCount++] = stopState.extraWait;
+      if (stop.type == PICK_UP) {
+        addRequest(stop.request);
+        state = PICK;
+      } else {
+        dropOffDelays[dropOffDelaysCount++] = stopState.dropOffDelay;
+        addLoad(stop.request, -1);
+        state = DROP;
+      }
+    }
+    StopState last = route[length - 1];
+    stopsCount = length;
+    time = last.time;
+    waitTime = last.waitTime;
+    serviceTime = last.serviceTime;
+    return this;
+  }
+
+  /**
+   * @return whether a stop that did not fail appended its extra wait and, for a drop-off, its
+   *     delay, and changed the state, which it does unless its time window start is missing
+   */
+  private static boolean appends(RouteStop stop) {
+    return (stop.type == PICK_UP
+        ? stop.request.pickUpTimeWindowStart : stop.request.dropOffTimeWindowStart) != null;
+  }
+
+  /**
+   * Drops the stops added after the checkpoint was taken. The checkpoint has to be taken on this
+   * route since the last {@link #reset}, and the route must not have been cut back below it.
+   */
+  PrimitiveRouteGenerator restore(Checkpoint checkpoint) {
+    stopsCount = checkpoint.stopsCount;
+    requestsCount = checkpoint.requestsCount;
+    extraWaitCount = checkpoint.extraWaitCount;
+    dropOffDelaysCount = checkpoint.dropOffDelaysCount;
+    System.arraycopy(checkpoint.load, 0, load, 0, load.length);
+    failureReason = checkpoint.failureReason;
+    failedStopIndex = checkpoint.failedStopIndex;
+    time = checkpoint.time;
+    waitTime = checkpoint.waitTime;
+    serviceTime = checkpoint.serviceTime;
+    state = checkpoint.state;
+    return this;
+  }
+
+  PrimitiveRouteGenerator add(RouteStop stop) {
+    if (stop.type == PICK_UP && state != FAILED && exceedsCapacity(stop.request)) {
+      state = FAILED;
+      failureReason = CAPACITY_EXCEEDED;
+    } else if (state == INITIAL) {
+      initialState(stop);
+    } else if (state == PICK) {
+      pickState(stop);
+    } else if (state == DROP) {
+      dropState(stop);
+    }
+    if (state == FAILED && failedStopIndex < 0) {
+      failedStopIndex = stopsCount;
+    }
+    if (stopsCount == stops.length) {
+      stops = Arrays.copyOf(stops, stopsCount * 2);
+      arrivals = Arrays.copyOf(arrivals, stopsCount * 2);
+    }
+    arrivals[stopsCount] = time;
+    stops[stopsCount++] = stop;
+    return this;
+  }
+
+  private void initialState(RouteStop stop) {
+    if (stop.type == PICK_UP) {
+      initialPick(stop);
+    } else if (stop.type == DROP_OFF) {
+      state = FAILED;
+      failureReason = NO_PICK_UP_FOR_DROP_OFF;
+    }
+  }
+
+  private void initialPick(RouteStop stop) {
+    if (stop.request.pickUpTimeWindowEnd != null
+        && time > nanos(stop.request.pickUpTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = PICK_UP_AFTER_TIME_WINDOW_END;
+    } else if (stop.request.pickUpTimeWindowStart != null) {
+      long pickUpTimeWindowStart = nanos(stop.request.pickUpTimeWindowStart);
+      waitTime = time < pickUpTimeWindowStart ? pickUpTimeWindowStart - time : 0;
+      addExtraWait(waitTime);
+      serviceTime = stop.request.pickUpServiceTime.toNanos();
+      state = PICK;
+      addRequest(stop.request);
+    }
+  }
+
+  private void pickState(RouteStop stop) {
+    if (stop.type == PICK_UP) {
+      if (sameLocation(stops[stopsCount - 1].request.pickUpLocationId,
+          stop.request.pickUpLocationId)) {
+        pickSameLocation(stop);
+      } else {
+        pickDifferentLocation(stop);
+      }
+    } else if (stop.type == DROP_OFF) {
+      dropDifferentLocation(stop);
+    }
+  }
+
+  private void pickSameLocation(RouteStop stop) {
+    if (stop.request.pickUpTimeWindowEnd != null
+        && time > nanos(stop.request.pickUpTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = PICK_UP_AFTER_TIME_WINDOW_END;
+    } else if (stop.request.pickUpTimeWindowStart != null) {
+      long pickUpTimeWindowStart = nanos(stop.request.pickUpTimeWindowStart);
+      long firstProjectedDeparture = time + waitTime + serviceTime;
+      if (firstProjectedDeparture < pickUpTimeWindowStart) {
+        time = firstProjectedDeparture;
+        waitTime = pickUpTimeWindowStart - firstProjectedDeparture;
+        addExtraWait(waitTime);
+        serviceTime = stop.request.pickUpServiceTime.toNanos();
+      } else {
+        long secondProjectedDeparture =
+            pickUpTimeWindowStart + stop.request.pickUpServiceTime.toNanos();
+        if (secondProjectedDeparture > firstProjectedDeparture) {
+          serviceTime += secondProjectedDeparture - firstProjectedDeparture;
+        }
+        addExtraWait(0);
+      }
+      state = PICK;
+      addRequest(stop.request);
+    }
+  }
+
+  private void pickDifferentLocation(RouteStop stop) {
+    if (arrivesAfter(stop, stop.request.pickUpTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = PICK_UP_AFTER_TIME_WINDOW_END;
+      return;
+    }
+    time = arrival(stops[stopsCount - 1], stop);
+    if (stop.request.pickUpTimeWindowEnd != null
+        && time > nanos(stop.request.pickUpTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = PICK_UP_AFTER_TIME_WINDOW_END;
+    } else if (stop.request.pickUpTimeWindowStart != null) {
+      long pickUpTimeWindowStart = nanos(stop.request.pickUpTimeWindowStart);
+      waitTime = time < pickUpTimeWindowStart ? pickUpTimeWindowStart - time : 0;
+      addExtraWait(waitTime);
+      serviceTime = stop.request.pickUpServiceTime.toNanos();
+      state = PICK;
+      addRequest(stop.request);
+    }
+  }
+
+  private void dropState(RouteStop stop) {
+    if (stop.type == PICK_UP) {
+      pickDifferentLocation(stop);
+    } else if (stop.type == DROP_OFF) {
+      if (sameLocation(stops[stopsCount - 1].request.dropOffLocationId,
+          stop.request.dropOffLocationId)) {
+        dropSameLocation(stop);
+      } else {
+        dropDifferentLocation(stop);
+      }
+    }
+  }
+
+  private void dropSameLocation(RouteStop stop) {
+    if (!containsRequest(stop.request)) {
+      state = FAILED;
+      failureReason = NO_PICK_UP_FOR_DROP_OFF;
+    } else if (stop.request.dropOffTimeWindowEnd != null
+        && time > nanos(stop.request.dropOffTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = DROP_OFF_AFTER_TIME_WINDOW_END;
+    } else if (stop.request.dropOffTimeWindowStart != null) {
+      long dropOffTimeWindowStart = nanos(stop.request.dropOffTimeWindowStart);
+      long firstProjectedDeparture = time + waitTime + serviceTime;
+      if (firstProjectedDeparture < dropOffTimeWindowStart) {
+        time = firstProjectedDeparture;
+        waitTime = dropOffTimeWindowStart - firstProjectedDeparture;
+        addExtraWait(waitTime);
+      } else {
+        time = dropOffTimeWindowStart;
+        addExtraWait(0);
+      }
+      serviceTime = stop.request.dropOffServiceTime.toNanos();
+      state = DROP;
+      calculateDropOffDelay(stop);
+      addLoad(stop.request, -1);
+    }
+  }
+
+  private void dropDifferentLocation(RouteStop stop) {
+    if (containsRequest(stop.request)
+        && arrivesAfter(stop, stop.request.dropOffTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = DROP_OFF_AFTER_TIME_WINDOW_END;
+      return;
+    }
+    time = arrival(stops[stopsCount - 1], stop);
+    if (!containsRequest(stop.request)) {
+      state = FAILED;
+      failureReason = NO_PICK_UP_FOR_DROP_OFF;
+    } else if (stop.request.dropOffTimeWindowEnd != null
+        && time > nanos(stop.request.dropOffTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = DROP_OFF_AFTER_TIME_WINDOW_END;
+    } else if (stop.request.dropOffTimeWindowStart != null) {
+      long dropOffTimeWindowStart = nanos(stop.request.dropOffTimeWindowStart);
+      waitTime = time < dropOffTimeWindowStart ? dropOffTimeWindowStart - time : 0;
+      addExtraWait(waitTime);
+      serviceTime = stop.request.dropOffServiceTime.toNanos();
+      state = DROP;
+      calculateDropOffDelay(stop);
+      addLoad(stop.request, -1);
+    }
+  }
+
+  private boolean arrivesAfter(RouteStop stop, Instant timeWindowEnd) {
+    if (drivingTimeLowerBound == null || timeWindowEnd == null) {
+      return false;
+    }
+    long earliestArrival = time + waitTime + serviceTime + NANOS_PER_SECOND
+        * drivingTimeLowerBound.seconds(stops[stopsCount - 1].location(), stop.location());
+    if (earliestArrival > nanos(timeWindowEnd)) {
+      time = earliestArrival;
+      drivingTimeLowerBound.lookupSaved();
+      return true;
+    }
+    return false;
+  }
+
+  private long arrival(RouteStop origin, RouteStop destination) {
+    return arrivalNanos(origin, destination, time + waitTime + serviceTime);
+  }
+
+  /**
+   * @return arrival at the destination when leaving the origin at the given departure, as the
+   *     generator would compute it
+   */
+  long arrivalNanos(RouteStop origin, RouteStop destination, long departure) {
+    if (indexed(origin) && indexed(destination)) {
+      return departure + NANOS_PER_SECOND * indexedDrivingTimeMatrix.drivingSeconds(
+          origin.locationId(), destination.locationId(),
+          Math.floorDiv(departure, NANOS_PER_SECOND));
+    }
+    if (timeDependentDrivingTimeMatrix != null) {
+      return departure + timeDependentDrivingTimeMatrix.drivingTime(
+          origin.location(), destination.location(), instant(departure)).toNanos();
+    }
+    return departure
+        + drivingTimeMatrix.drivingTime(origin.location(), destination.location()).toNanos();
+  }
+
+  private boolean indexed(RouteStop stop) {
+    Integer locationId = stop.locationId();
+    return indexedDrivingTimeMatrix != null && locationId != null
+        && indexedDrivingTimeMatrix.indexes(locationId, stop.location());
+  }
+
+  /**
+   * @return whether picking up the request overflows the capacity limits in any unit
+   */
+  private boolean exceedsCapacity(Request request) {
+    if (capacityLimits == null || request.requiredCapacities == null || containsRequest(request)) {
+      return false;
+    }
+    for (int i = 0; i < request.requiredCapacities.size(); i++) {
+      Capacity capacity = request.requiredCapacities.get(i);
+      int unit = capacity.unit.ordinal();
+      if (load[unit] + capacity.quantity
+          > capacityLimits[unit] + RouteGenerator.CAPACITY_TOLERANCE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void addLoad(Request request, int sign) {
+    if (capacityLimits == null || request.requiredCapacities == null) {
+      return;
+    }
+    for (int i = 0; i < request.requiredCapacities.size(); i++) {
+      Capacity capacity = request.requiredCapacities.get(i);
+      load[capacity.unit.ordinal()] += sign * capacity.quantity;
+    }
+  }
+
+  private void calculateDropOffDelay(RouteStop stop) {
+    long departure = time + waitTime + serviceTime;
+    long delay = 0;
+    if (stop.request.dropOffTimeTarget != null) {
+      long dropOffTimeTarget = nanos(stop.request.dropOffTimeTarget);
+      if (departure > dropOffTimeTarget) {
+        delay = departure - dropOffTimeTarget;
+      }
+    }
+    if (dropOffDelaysCount == dropOffDelays.length) {
+      dropOffDelays = Arrays.copyOf(dropOffDelays, dropOffDelaysCount * 2);
+    }
+    dropOffDelays[dropOffDelaysCount++] = delay;
+  }
+
+  private void addExtraWait(long wait) {
+    if (extraWaitCount == extraWait.length) {
+      extraWait = Arrays.copyOf(extraWait, extraWaitCount * 2);
+    }
+    extraWait[extraWaitCount++] = wait;
+  }
+
+  private void addRequest(Request request) {
+    if (containsRequest(request)) {
+      return;
+    }
+    if (requestsCount == requests.length) {
+      requests = Arrays.copyOf(requests, requestsCount * 2);
+    }
+    requests[requestsCount++] = request;
+    addLoad(request, 1);
+  }
+
+  private boolean containsRequest(Request request) {
+    for (int i = 0; i < requestsCount; i++) {
+      if (requests[i] == request || requests[i].equals(request)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static <T> T[] grow(T[] array, int length) {
+    return array.length < length ? Arrays.copyOf(array, Math.max(length, 2 * array.length)) : array;
+  }
+
+  private static long[] grow(long[] array, int length) {
+    return array.length < length ? Arrays.copyOf(array, Math.max(length, 2 * array.length)) : array;
+  }
+
+  private static boolean sameLocation(Integer left, Integer right) {
+    return left != null && left.equals(right);
+  }
+
+  static long nanos(Instant instant) {
+    return Math.addExact(
+        Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+  }
+
+  private static Instant instant(long nanos) {
+    return Instant.ofEpochSecond(
+        Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+  }
+
+  boolean failed() {
+    return state == FAILED;
+  }
+
+  FailureReason failureReason() {
+    return failureReason;
+  }
+
+  /**
+   * @return index of the stop at which the route failed, or -1 if it did not fail
+   */
+  int failedStopIndex() {
+    return failedStopIndex;
+  }
+
+  long timeNanos() {
+    return time;
+  }
+
+  /**
+   * @return time of leaving the last stop
+   */
+  long departureNanos() {
+    return time + waitTime + serviceTime;
+  }
+
+  /**
+   * @return time recorded right after the stop at the index was added, its arrival unless the
+   *     route failed there
+   */
+  long arrivalNanos(int index) {
+    return arrivals[index];
+  }
+
+  long serviceTimeNanos() {
+    return serviceTime;
+  }
+
+  int extraWaitCount() {
+    return extraWaitCount;
+  }
+
+  long extraWaitNanos(int index) {
+    return extraWait[index];
+  }
+
+  int dropOffDelaysCount() {
+    return dropOffDelaysCount;
+  }
+
+  long dropOffDelayNanos(int index) {
+    return dropOffDelays[index];
+  }
+
+  int stopsCount() {
+    return stopsCount;
+  }
+
+  RouteStop stop(int index) {
+    return stops[index];
+  }
+
+  Instant time() {
+    return instant(time);
+  }
+
+  Duration serviceTime() {
+    return Duration.ofNanos(serviceTime);
+  }
+
+  /**
+   * @return copy of the stops, e.g. for a {@link Trip}
+   */
+  LinkedList<RouteStop> stops() {
+    return new LinkedList<>(Arrays.asList(stops).subList(0, stopsCount));
+  }
+
+  /**
+   * @return copy of the picked up requests, e.g. for a {@link Trip}
+   */
+  Set<Request> requests() {
+    return new HashSet<>(Arrays.asList(requests).subList(0, requestsCount));
+  }
+
+  static final class Checkpoint {
+
+    private int stopsCount;
+    private int requestsCount;
+    private int extraWaitCount;
+    private int dropOffDelaysCount;
+    private final double[] load = new double[Capacity.Unit.values().length];
+    private FailureReason failureReason;
+    private int failedStopIndex;
+    private long time;
+    private long waitTime;
+    private long serviceTime;
+    private State state;
+  }
+
+  /**
+   * State a stop leaves behind: its arrival, the wait and service time at it, and the extra wait
+   * and drop-off delay it appended. Extended by callers that keep one per stop, so it holds no
+   * more than that.
+   */
+  static class StopState {
+
+    private RouteStop stop;
+    private long time;
+    private long waitTime;
+    private long serviceTime;
+    private long extraWait;
+    private long dropOffDelay;
+
+    RouteStop stop() {
+      return stop;
+    }
+  }
+}
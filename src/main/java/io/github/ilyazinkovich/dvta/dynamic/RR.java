@@ -4,57 +4,142 @@ import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
 class RR {
 
   final Set<Set<Request>> pairs;
+  private final Map<Request, Set<Request>> partners;
 
   RR(Set<Set<Request>> pairs) {
     this.pairs = pairs;
+    this.partners = new HashMap<>();
+    for (Set<Request> pair : pairs) {
+      if (pair.size() != 2) {
+        throw new IllegalArgumentException("Pair must hold two requests: " + pair);
+      }
+      Iterator<Request> requests = pair.iterator();
+      indexPair(requests.next(), requests.next());
+    }
   }
 
   void add(Request request, Collection<Request> requests, DrivingTimeMatrix drivingTimeMatrix) {
-    for (Request r : requests) {
-      if (match(r, request, drivingTimeMatrix)) {
-        Set<Request> requestPair = new HashSet<>();
-        requestPair.add(request);
-        requestPair.add(r);
-        pairs.add(requestPair);
+    add(request, requests, drivingTimeMatrix, null);
+  }
+
+  /**
+   * Pairs the request only with the pending requests the index considers reachable. The caller
+   * inserts the request into the index afterwards, as with the collection of processed requests.
+   */
+  void add(Request request, PendingRequestIndex pendingRequests,
+      DrivingTimeMatrix drivingTimeMatrix) {
+    add(request, pendingRequests.candidates(request), drivingTimeMatrix,
+        pendingRequests.drivingTimeLowerBound());
+  }
+
+  /**
+   * Batches the driving times between the request and the others into one lookup per direction,
+   * unless the matrix is time-dependent, which has no departure times to batch for, or indexed,
+   * which the route generators already read by location id without allocating.
+   */
+  void add(Request request, Collection<Request> requests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound) {
+    if (drivingTimeMatrix instanceof TimeDependentDrivingTimeMatrix
+        || drivingTimeMatrix instanceof IndexedDrivingTimeMatrix) {
+      for (Request r : requests) {
+        if (match(r, request, drivingTimeMatrix, drivingTimeLowerBound)) {
+          addPair(request, r);
+        }
+      }
+      return;
+    }
+    Request[] others = requests.toArray(Request[]::new);
+    LatLng[] requestLocations = {request.pickUpLocation, request.dropOffLocation};
+    LatLng[] otherLocations = new LatLng[2 * others.length];
+    for (int i = 0; i < others.length; i++) {
+      otherLocations[2 * i] = others[i].pickUpLocation;
+      otherLocations[2 * i + 1] = others[i].dropOffLocation;
+    }
+    long[] fromRequest = new long[requestLocations.length * otherLocations.length];
+    long[] toRequest = new long[otherLocations.length * requestLocations.length];
+    drivingTimeMatrix.drivingTimes(requestLocations, otherLocations, fromRequest);
+    drivingTimeMatrix.drivingTimes(otherLocations, requestLocations, toRequest);
+    for (int i = 0; i < others.length; i++) {
+      Request r = others[i];
+      DrivingTimeMatrix legs = new RequestPairDrivingTimeMatrix(
+          request, r, fromRequest, toRequest, i, others.length, drivingTimeMatrix);
+      if (match(r, request, legs, drivingTimeLowerBound)) {
+        addPair(request, r);
       }
     }
   }
 
-  private boolean match(Request r1, Request r2, DrivingTimeMatrix drivingTimeMatrix) {
+  /**
+   * @return requests paired with the request
+   */
+  Set<Request> partners(Request request) {
+    return partners.getOrDefault(request, Collections.emptySet());
+  }
+
+  /**
+   * @return handles of the requests of the table paired with the request
+   */
+  int[] partnerHandles(Request request, RequestTable requestTable) {
+    return partners(request).stream()
+        .mapToInt(requestTable::handle)
+        .filter(handle -> handle >= 0)
+        .toArray();
+  }
+
+  private void addPair(Request r1, Request r2) {
+    Set<Request> requestPair = new HashSet<>();
+    requestPair.add(r1);
+    requestPair.add(r2);
+    if (pairs.add(requestPair)) {
+      indexPair(r1, r2);
+    }
+  }
+
+  private void indexPair(Request r1, Request r2) {
+    partners.computeIfAbsent(r1, key -> new HashSet<>()).add(r2);
+    partners.computeIfAbsent(r2, key -> new HashSet<>()).add(r1);
+  }
+
+  private boolean match(Request r1, Request r2, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound) {
     return Stream.of(
-        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r1, PICK_UP))
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r1, DROP_OFF))
             .add(new RouteStop(r2, DROP_OFF)),
-        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r1, PICK_UP))
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r2, DROP_OFF))
             .add(new RouteStop(r1, DROP_OFF)),
-        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r1.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r1, PICK_UP))
             .add(new RouteStop(r1, DROP_OFF))
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r2, DROP_OFF)),
-        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r1, PICK_UP))
             .add(new RouteStop(r1, DROP_OFF))
             .add(new RouteStop(r2, DROP_OFF)),
-        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r1, PICK_UP))
             .add(new RouteStop(r2, DROP_OFF))
             .add(new RouteStop(r1, DROP_OFF)),
-        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix)
+        new RouteGenerator(r2.pickUpTimeWindowStart, drivingTimeMatrix, drivingTimeLowerBound)
             .add(new RouteStop(r2, PICK_UP))
             .add(new RouteStop(r2, DROP_OFF))
             .add(new RouteStop(r1, PICK_UP))
@@ -0,0 +1,67 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.time.Duration;
+
+/**
+ * Legs between the locations of a new request and one other request, taken from batched
+ * driving times. Any other leg is delegated to the underlying matrix.
+ */
+class RequestPairDrivingTimeMatrix implements DrivingTimeMatrix {
+
+  private final Request request;
+  private final Request other;
+  private final long[] fromRequest;
+  private final long[] toRequest;
+  private final int otherIndex;
+  private final int othersCount;
+  private final DrivingTimeMatrix drivingTimeMatrix;
+
+  /**
+   * @param request new request
+   * @param other other request
+   * @param fromRequest seconds from the pick-up and drop-off of the new request to the pick-up
+   *     and drop-off of every other request
+   * @param toRequest seconds from the pick-up and drop-off of every other request to the pick-up
+   *     and drop-off of the new request
+   * @param otherIndex position of the other request among all other requests
+   * @param othersCount number of other requests
+   * @param drivingTimeMatrix matrix for the legs that were not batched
+   */
+  RequestPairDrivingTimeMatrix(Request request, Request other,
+      long[] fromRequest, long[] toRequest, int otherIndex, int othersCount,
+      DrivingTimeMatrix drivingTimeMatrix) {
+    this.request = request;
+    this.other = other;
+    this.fromRequest = fromRequest;
+    this.toRequest = toRequest;
+    this.otherIndex = otherIndex;
+    this.othersCount = othersCount;
+    this.drivingTimeMatrix = drivingTimeMatrix;
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    int requestOrigin = index(request, origin);
+    int otherDestination = index(other, destination);
+    if (requestOrigin >= 0 && otherDestination >= 0) {
+      return Duration.ofSeconds(
+          fromRequest[requestOrigin * 2 * othersCount + 2 * otherIndex + otherDestination]);
+    }
+    int otherOrigin = index(other, origin);
+    int requestDestination = index(request, destination);
+    if (otherOrigin >= 0 && requestDestination >= 0) {
+      return Duration.ofSeconds(toRequest[(2 * otherIndex + otherOrigin) * 2 + requestDestination]);
+    }
+    return drivingTimeMatrix.drivingTime(origin, destination);
+  }
+
+  private static int index(Request request, LatLng location) {
+    if (location == request.pickUpLocation) {
+      return 0;
+    } else if (location == request.dropOffLocation) {
+      return 1;
+    } else {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pending requests addressed by dense {@code int} handles. Handles of removed requests are
+ * reused, so anything keyed by handle stays as large as the largest number of requests pending
+ * at once, and trips referring to a removed request have to be dropped before its handle is
+ * handed out again.
+ *
+ * <p>The table keeps the pick-up and drop-off of every request, so route stops built from it
+ * carry their handle and are never allocated twice.
+ */
+class RequestTable {
+
+  private final Map<Request, Integer> handles;
+  private RouteStop[] pickUps;
+  private RouteStop[] dropOffs;
+  private int[] freeHandles;
+  private int freeHandlesCount;
+  private int capacity;
+
+  RequestTable() {
+    this(64);
+  }
+
+  RequestTable(int initialCapacity) {
+    this.handles = new HashMap<>();
+    int length = Math.max(1, initialCapacity);
+    this.pickUps = new RouteStop[length];
+    this.dropOffs = new RouteStop[length];
+    this.freeHandles = new int[length];
+  }
+
+  /**
+   * @return handle of the request, added to the table unless it is there already
+   */
+  int add(Request request) {
+    Integer existing = handles.get(request);
+    if (existing != null) {
+      return existing;
+    }
+    int handle = freeHandlesCount > 0 ? freeHandles[--freeHandlesCount] : capacity++;
+    if (handle == pickUps.length) {
+      grow();
+    }
+    handles.put(request, handle);
+    pickUps[handle] = new RouteStop(request, RouteStop.Type.PICK_UP, handle);
+    dropOffs[handle] = new RouteStop(request, RouteStop.Type.DROP_OFF, handle);
+    return handle;
+  }
+
+  /**
+   * Frees the handle of the request for reuse.
+   *
+   * @return whether the request was in the table
+   */
+  boolean remove(Request request) {
+    Integer handle = handles.remove(request);
+    if (handle == null) {
+      return false;
+    }
+    pickUps[handle] = null;
+    dropOffs[handle] = null;
+    freeHandles[freeHandlesCount++] = handle;
+    return true;
+  }
+
+  /**
+   * @return handle of the request, or -1 if it is not in the table
+   */
+  int handle(Request request) {
+    Integer handle = handles.get(request);
+    return handle == null ? -1 : handle;
+  }
+
+  RouteStop pickUp(int handle) {
+    return pickUps[handle];
+  }
+
+  RouteStop dropOff(int handle) {
+    return dropOffs[handle];
+  }
+
+  private void grow() {
+    int length = 2 * pickUps.length;
+    pickUps = Arrays.copyOf(pickUps, length);
+    dropOffs = Arrays.copyOf(dropOffs, length);
+    freeHandles = Arrays.copyOf(freeHandles, length);
+  }
+}
@@ -18,6 +18,11 @@ import java.util.Scanner;
 class RequestsReader {
 
   static List<Request> read(Duration maxDispatchTime, Duration deliveryTimeBuffer, Random random) {
+    return read(maxDispatchTime, deliveryTimeBuffer, random, new LocationIndex());
+  }
+
+  static List<Request> read(Duration maxDispatchTime, Duration deliveryTimeBuffer, Random random,
+      LocationIndex locations) {
     List<Request> requests = new ArrayList<>();
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     try (Scanner scanner = new Scanner(Paths.get("data.csv"))) {
@@ -28,10 +33,10 @@ class RequestsReader {
         String id = data[0];
         LatLng pickUpLocation = new LatLng(Double.parseDouble(data[3]),
             Double.parseDouble(data[2]));
-        Integer pickUpLocationId = pickUpLocation.hashCode();
+        Integer pickUpLocationId = locations.intern(pickUpLocation);
         LatLng dropOffLocation = new LatLng(Double.parseDouble(data[5]),
             Double.parseDouble(data[4]));
-        Integer dropOffLocationId = dropOffLocation.hashCode();
+        Integer dropOffLocationId = locations.intern(dropOffLocation);
         Instant requestTime = LocalDateTime.parse(data[1], formatter).toInstant(ZoneOffset.UTC);
         Instant dispatchTimeout = requestTime.plus(maxDispatchTime);
         Instant pickUpTimeWindowStart = requestTime.plus(Duration.ofMinutes(random.nextInt(15)));
@@ -0,0 +1,92 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Directed road graph with travel seconds on edges. Nodes are renumbered densely in the order
+ * they are read.
+ */
+class RoadGraph {
+
+  final double[] lat;
+  final double[] lng;
+  final int[] edgeFrom;
+  final int[] edgeTo;
+  final int[] edgeSeconds;
+
+  RoadGraph(double[] lat, double[] lng, int[] edgeFrom, int[] edgeTo, int[] edgeSeconds) {
+    this.lat = lat;
+    this.lng = lng;
+    this.edgeFrom = edgeFrom;
+    this.edgeTo = edgeTo;
+    this.edgeSeconds = edgeSeconds;
+  }
+
+  /**
+   * Reads an edge-list file, one record per line: {@code v,<node id>,<lat>,<lng>} for nodes and
+   * {@code e,<from node id>,<to node id>,<travel seconds>} for directed edges. Empty lines and
+   * lines starting with {@code #} are skipped.
+   */
+  static RoadGraph read(Path path) {
+    Map<Long, Integer> nodes = new HashMap<>();
+    List<double[]> locations = new ArrayList<>();
+    List<long[]> edges = new ArrayList<>();
+    try (Scanner scanner = new Scanner(path)) {
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine().trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] data = line.split(",");
+        if (data[0].equals("v")) {
+          nodes.put(Long.parseLong(data[1]), locations.size());
+          locations.add(new double[]{Double.parseDouble(data[2]), Double.parseDouble(data[3])});
+        } else if (data[0].equals("e")) {
+          edges.add(new long[]{
+              Long.parseLong(data[1]), Long.parseLong(data[2]), Long.parseLong(data[3])});
+        } else {
+          throw new IllegalArgumentException("Unknown record: " + line);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read file.", e);
+    }
+    double[] lat = new double[locations.size()];
+    double[] lng = new double[locations.size()];
+    for (int node = 0; node < locations.size(); node++) {
+      lat[node] = locations.get(node)[0];
+      lng[node] = locations.get(node)[1];
+    }
+    int[] edgeFrom = new int[edges.size()];
+    int[] edgeTo = new int[edges.size()];
+    int[] edgeSeconds = new int[edges.size()];
+    for (int edge = 0; edge < edges.size(); edge++) {
+      edgeFrom[edge] = node(nodes, edges.get(edge)[0]);
+      edgeTo[edge] = node(nodes, edges.get(edge)[1]);
+      edgeSeconds[edge] = Math.toIntExact(edges.get(edge)[2]);
+    }
+    return new RoadGraph(lat, lng, edgeFrom, edgeTo, edgeSeconds);
+  }
+
+  private static int node(Map<Long, Integer> nodes, long id) {
+    Integer node = nodes.get(id);
+    if (node == null) {
+      throw new IllegalArgumentException("Edge references unknown node " + id);
+    }
+    return node;
+  }
+
+  int nodesCount() {
+    return lat.length;
+  }
+
+  int edgesCount() {
+    return edgeFrom.length;
+  }
+}
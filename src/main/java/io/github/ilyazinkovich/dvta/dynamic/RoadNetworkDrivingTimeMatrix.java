@@ -0,0 +1,167 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Driving times over a local road graph. Locations are snapped to the nearest graph node and
+ * node-to-node times come from a {@link ContractionHierarchy}. Unreachable destinations get
+ * {@link ContractionHierarchy#UNREACHABLE} seconds.
+ */
+class RoadNetworkDrivingTimeMatrix implements DrivingTimeMatrix {
+
+  private static final double CELL_DEGREES = 0.005;
+
+  private final RoadGraph graph;
+  private final ContractionHierarchy hierarchy;
+  private final Map<Long, int[]> cells;
+  private final int maxRing;
+  private final Map<LatLng, Integer> snapped;
+
+  RoadNetworkDrivingTimeMatrix(RoadGraph graph, ContractionHierarchy hierarchy) {
+    this.graph = graph;
+    this.hierarchy = hierarchy;
+    this.cells = cells(graph);
+    this.maxRing = maxRing(graph);
+    this.snapped = new ConcurrentHashMap<>();
+  }
+
+  static RoadNetworkDrivingTimeMatrix load(Path path) {
+    RoadGraph graph = RoadGraph.read(path);
+    return new RoadNetworkDrivingTimeMatrix(graph, ContractionHierarchy.build(graph));
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    return Duration.ofSeconds(hierarchy.drivingSeconds(snap(origin), snap(destination)));
+  }
+
+  /**
+   * @return driving seconds from the origin to every destination, in the order of destinations
+   */
+  int[] drivingSeconds(LatLng origin, List<LatLng> destinations) {
+    int[] nodes = new int[destinations.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = snap(destinations.get(i));
+    }
+    return hierarchy.drivingSeconds(snap(origin), nodes);
+  }
+
+  /**
+   * Runs one one-to-many search per origin instead of one search per leg.
+   */
+  @Override
+  public void drivingTimes(LatLng[] origins, LatLng[] destinations, long[] seconds) {
+    int[] nodes = new int[destinations.length];
+    for (int j = 0; j < nodes.length; j++) {
+      nodes[j] = snap(destinations[j]);
+    }
+    for (int i = 0; i < origins.length; i++) {
+      int[] row = hierarchy.drivingSeconds(snap(origins[i]), nodes);
+      for (int j = 0; j < row.length; j++) {
+        seconds[i * nodes.length + j] = row[j];
+      }
+    }
+  }
+
+  /**
+   * Shortest paths over whole-second edges satisfy the triangle inequality exactly.
+   */
+  @Override
+  public long triangleSlackSeconds() {
+    return 0;
+  }
+
+  int snap(LatLng location) {
+    return snapped.computeIfAbsent(location, this::nearestNode);
+  }
+
+  private int nearestNode(LatLng location) {
+    long row = cell(location.lat);
+    long column = cell(location.lng);
+    double cosLat = Math.cos(Math.toRadians(location.lat));
+    int nearest = -1;
+    double nearestDistance = Double.MAX_VALUE;
+    for (int ring = 0; ring <= maxRing; ring++) {
+      double ringDistance = (ring - 1) * CELL_DEGREES * cosLat;
+      if (nearest >= 0 && ringDistance * ringDistance > nearestDistance) {
+        break;
+      }
+      for (long r = row - ring; r <= row + ring; r++) {
+        for (long c = column - ring; c <= column + ring; c++) {
+          if (Math.max(Math.abs(r - row), Math.abs(c - column)) != ring) {
+            continue;
+          }
+          int[] nodes = cells.get(key(r, c));
+          if (nodes == null) {
+            continue;
+          }
+          for (int node : nodes) {
+            double distance = squaredDistance(node, location, cosLat);
+            if (distance < nearestDistance) {
+              nearestDistance = distance;
+              nearest = node;
+            }
+          }
+        }
+      }
+    }
+    if (nearest < 0) {
+      for (int node = 0; node < graph.nodesCount(); node++) {
+        double distance = squaredDistance(node, location, cosLat);
+        if (distance < nearestDistance) {
+          nearestDistance = distance;
+          nearest = node;
+        }
+      }
+    }
+    if (nearest < 0) {
+      throw new IllegalStateException("Road graph has no nodes");
+    }
+    return nearest;
+  }
+
+  private double squaredDistance(int node, LatLng location, double cosLat) {
+    double dLat = graph.lat[node] - location.lat;
+    double dLng = (graph.lng[node] - location.lng) * cosLat;
+    return dLat * dLat + dLng * dLng;
+  }
+
+  private static Map<Long, int[]> cells(RoadGraph graph) {
+    Map<Long, List<Integer>> lists = new HashMap<>();
+    for (int node = 0; node < graph.nodesCount(); node++) {
+      lists.computeIfAbsent(key(cell(graph.lat[node]), cell(graph.lng[node])),
+          key -> new ArrayList<>()).add(node);
+    }
+    Map<Long, int[]> cells = new HashMap<>();
+    lists.forEach((key, nodes) -> cells.put(key, nodes.stream().mapToInt(n -> n).toArray()));
+    return cells;
+  }
+
+  private static int maxRing(RoadGraph graph) {
+    double minLat = Double.MAX_VALUE;
+    double maxLat = -Double.MAX_VALUE;
+    double minLng = Double.MAX_VALUE;
+    double maxLng = -Double.MAX_VALUE;
+    for (int node = 0; node < graph.nodesCount(); node++) {
+      minLat = Math.min(minLat, graph.lat[node]);
+      maxLat = Math.max(maxLat, graph.lat[node]);
+      minLng = Math.min(minLng, graph.lng[node]);
+      maxLng = Math.max(maxLng, graph.lng[node]);
+    }
+    return (int) Math.ceil(Math.max(maxLat - minLat, maxLng - minLng) / CELL_DEGREES) + 1;
+  }
+
+  private static long cell(double degrees) {
+    return (long) Math.floor(degrees / CELL_DEGREES);
+  }
+
+  private static long key(long row, long column) {
+    return (row << 32) ^ (column & 0xFFFFFFFFL);
+  }
+}
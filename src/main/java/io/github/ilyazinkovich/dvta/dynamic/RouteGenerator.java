@@ -1,5 +1,6 @@
 package io.github.ilyazinkovich.dvta.dynamic;
 
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.CAPACITY_EXCEEDED;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.NO_PICK_UP_FOR_DROP_OFF;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.PICK_UP_AFTER_TIME_WINDOW_END;
@@ -19,18 +20,47 @@ import java.util.Set;
 
 class RouteGenerator {
 
+  /**
+   * Absorbs rounding of fractional quantities summed into the load.
+   */
+  static final double CAPACITY_TOLERANCE = 1e-9;
+
   private final LinkedList<RouteStop> stops;
   private final Set<Request> requests;
   private final LinkedList<Duration> extraWait;
   private final LinkedList<Duration> dropOffDelays;
   private final DrivingTimeMatrix drivingTimeMatrix;
+  private final IndexedDrivingTimeMatrix indexedDrivingTimeMatrix;
+  private final TimeDependentDrivingTimeMatrix timeDependentDrivingTimeMatrix;
+  private final DrivingTimeLowerBound drivingTimeLowerBound;
+  private final double[] capacityLimits;
+  private final double[] load;
   private FailureReason failureReason;
+  private int failedStopIndex;
   private Instant time;
   private Duration waitTime;
   private Duration serviceTime;
   private State state;
 
   RouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix) {
+    this(time, drivingTimeMatrix, null);
+  }
+
+  RouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound) {
+    this(time, drivingTimeMatrix, drivingTimeLowerBound, null);
+  }
+
+  /**
+   * @param time start time of the route
+   * @param drivingTimeMatrix driving times between stops
+   * @param drivingTimeLowerBound optional lower bound checked against time windows before the
+   *     matrix is asked for a leg
+   * @param capacityLimits optional largest load per unit, see {@link Capacity#vector}, checked
+   *     on every pick-up before the matrix is asked for a leg
+   */
+  RouteGenerator(Instant time, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
     this.stops = new LinkedList<>();
     this.requests = new HashSet<>();
     this.time = time;
@@ -39,17 +69,32 @@ class RouteGenerator {
     this.extraWait = new LinkedList<>();
     this.dropOffDelays = new LinkedList<>();
     this.drivingTimeMatrix = drivingTimeMatrix;
+    this.indexedDrivingTimeMatrix = drivingTimeMatrix instanceof IndexedDrivingTimeMatrix
+        ? (IndexedDrivingTimeMatrix) drivingTimeMatrix : null;
+    this.timeDependentDrivingTimeMatrix =
+        drivingTimeMatrix instanceof TimeDependentDrivingTimeMatrix
+            ? (TimeDependentDrivingTimeMatrix) drivingTimeMatrix : null;
+    this.drivingTimeLowerBound = drivingTimeLowerBound;
+    this.capacityLimits = capacityLimits;
+    this.load = new double[Capacity.Unit.values().length];
+    this.failedStopIndex = -1;
     this.state = INITIAL;
   }
 
   RouteGenerator add(RouteStop stop) {
-    if (state == INITIAL) {
+    if (stop.type == PICK_UP && state != FAILED && exceedsCapacity(stop.request)) {
+      state = FAILED;
+      failureReason = CAPACITY_EXCEEDED;
+    } else if (state == INITIAL) {
       initialState(stop);
     } else if (state == PICK) {
       pickState(stop);
     } else if (state == DROP) {
       dropState(stop);
     }
+    if (state == FAILED && failedStopIndex < 0) {
+      failedStopIndex = stops.size();
+    }
     stops.add(stop);
     return this;
   }
@@ -77,7 +122,9 @@ class RouteGenerator {
       extraWait.add(waitTime);
       serviceTime = stop.request.pickUpServiceTime;
       state = PICK;
-      requests.add(stop.request);
+      if (requests.add(stop.request)) {
+        addLoad(stop.request, 1);
+      }
     }
   }
 
@@ -116,13 +163,19 @@ class RouteGenerator {
         extraWait.add(Duration.ZERO);
       }
       state = PICK;
-      requests.add(stop.request);
+      if (requests.add(stop.request)) {
+        addLoad(stop.request, 1);
+      }
     }
   }
 
   private void pickDifferentLocation(RouteStop stop) {
-    time = time.plus(waitTime).plus(serviceTime)
-        .plus(drivingTimeMatrix.drivingTime(stops.getLast().location(), stop.location()));
+    if (arrivesAfter(stop, stop.request.pickUpTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = PICK_UP_AFTER_TIME_WINDOW_END;
+      return;
+    }
+    time = arrival(stops.getLast(), stop);
     if (stop.request.pickUpTimeWindowEnd != null
         && time.isAfter(stop.request.pickUpTimeWindowEnd)) {
       state = FAILED;
@@ -136,7 +189,9 @@ class RouteGenerator {
       extraWait.add(waitTime);
       serviceTime = stop.request.pickUpServiceTime;
       state = PICK;
-      requests.add(stop.request);
+      if (requests.add(stop.request)) {
+        addLoad(stop.request, 1);
+      }
     }
   }
 
@@ -180,12 +235,18 @@ class RouteGenerator {
       serviceTime = stop.request.dropOffServiceTime;
       state = DROP;
       calculateDropOffDelay(stop);
+      addLoad(stop.request, -1);
     }
   }
 
   private void dropDifferentLocation(RouteStop stop) {
-    time = time.plus(waitTime).plus(serviceTime)
-        .plus(drivingTimeMatrix.drivingTime(stops.getLast().location(), stop.location()));
+    if (requests.contains(stop.request)
+        && arrivesAfter(stop, stop.request.dropOffTimeWindowEnd)) {
+      state = FAILED;
+      failureReason = DROP_OFF_AFTER_TIME_WINDOW_END;
+      return;
+    }
+    time = arrival(stops.getLast(), stop);
     if (!requests.contains(stop.request)) {
       state = FAILED;
       failureReason = NO_PICK_UP_FOR_DROP_OFF;
@@ -203,6 +264,68 @@ class RouteGenerator {
       serviceTime = stop.request.dropOffServiceTime;
       state = DROP;
       calculateDropOffDelay(stop);
+      addLoad(stop.request, -1);
+    }
+  }
+
+  private boolean arrivesAfter(RouteStop stop, Instant timeWindowEnd) {
+    if (drivingTimeLowerBound == null || timeWindowEnd == null) {
+      return false;
+    }
+    Instant earliestArrival = time.plus(waitTime).plus(serviceTime)
+        .plusSeconds(drivingTimeLowerBound.seconds(stops.getLast().location(), stop.location()));
+    if (earliestArrival.isAfter(timeWindowEnd)) {
+      time = earliestArrival;
+      drivingTimeLowerBound.lookupSaved();
+      return true;
+    }
+    return false;
+  }
+
+  private Instant arrival(RouteStop origin, RouteStop destination) {
+    Instant departure = time.plus(waitTime).plus(serviceTime);
+    if (indexed(origin) && indexed(destination)) {
+      return departure.plusSeconds(indexedDrivingTimeMatrix.drivingSeconds(
+          origin.locationId(), destination.locationId(), departure.getEpochSecond()));
+    }
+    if (timeDependentDrivingTimeMatrix != null) {
+      return departure.plus(timeDependentDrivingTimeMatrix
+          .drivingTime(origin.location(), destination.location(), departure));
+    }
+    return departure.plus(drivingTimeMatrix.drivingTime(origin.location(), destination.location()));
+  }
+
+  private boolean indexed(RouteStop stop) {
+    Integer locationId = stop.locationId();
+    return indexedDrivingTimeMatrix != null && locationId != null
+        && indexedDrivingTimeMatrix.indexes(locationId, stop.location());
+  }
+
+  /**
+   * @return whether picking up the request overflows the capacity limits in any unit
+   */
+  private boolean exceedsCapacity(Request request) {
+    if (capacityLimits == null || request.requiredCapacities == null
+        || requests.contains(request)) {
+      return false;
+    }
+    for (int i = 0; i < request.requiredCapacities.size(); i++) {
+      Capacity capacity = request.requiredCapacities.get(i);
+      int unit = capacity.unit.ordinal();
+      if (load[unit] + capacity.quantity > capacityLimits[unit] + CAPACITY_TOLERANCE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void addLoad(Request request, int sign) {
+    if (capacityLimits == null || request.requiredCapacities == null) {
+      return;
+    }
+    for (int i = 0; i < request.requiredCapacities.size(); i++) {
+      Capacity capacity = request.requiredCapacities.get(i);
+      load[capacity.unit.ordinal()] += sign * capacity.quantity;
     }
   }
 
@@ -231,6 +354,13 @@ class RouteGenerator {
     return failureReason;
   }
 
+  /**
+   * @return index of the stop at which the route failed, or -1 if it did not fail
+   */
+  int failedStopIndex() {
+    return failedStopIndex;
+  }
+
   LinkedList<Duration> extraWait() {
     return extraWait;
   }
@@ -256,7 +386,8 @@ class RouteGenerator {
   }
 
   enum FailureReason {
-    NO_PICK_UP_FOR_DROP_OFF, PICK_UP_AFTER_TIME_WINDOW_END, DROP_OFF_AFTER_TIME_WINDOW_END
+    NO_PICK_UP_FOR_DROP_OFF, PICK_UP_AFTER_TIME_WINDOW_END, DROP_OFF_AFTER_TIME_WINDOW_END,
+    CAPACITY_EXCEEDED
   }
 
   enum State {
@@ -4,15 +4,26 @@ import java.util.Objects;
 
 class RouteStop {
 
+  static final int NO_HANDLE = -1;
+
   public final Request request;
   public final Type type;
+  /**
+   * Handle of the request in a {@link RequestTable}, not part of the identity of the stop.
+   */
+  final int handle;
 
   RouteStop(
       Request request,
       Type type
   ) {
+    this(request, type, NO_HANDLE);
+  }
+
+  RouteStop(Request request, Type type, int handle) {
     this.request = request;
     this.type = type;
+    this.handle = handle;
   }
 
   LatLng location() {
@@ -23,6 +34,14 @@ class RouteStop {
     }
   }
 
+  Integer locationId() {
+    if (type == Type.PICK_UP) {
+      return request.pickUpLocationId;
+    } else {
+      return request.dropOffLocationId;
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -0,0 +1,53 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.Objects;
+
+/**
+ * End time, total drop-off delay, total extra wait and end location of a trip route, on which
+ * routes are compared.
+ */
+final class RouteSummary {
+
+  /**
+   * Time of leaving the last stop in epoch nanoseconds.
+   */
+  final long endNanos;
+  /**
+   * Sum of the delays of the drop-offs past their targets in nanoseconds.
+   */
+  final long dropOffDelayNanos;
+  /**
+   * Sum of the waits for time windows to open in nanoseconds.
+   */
+  final long extraWaitNanos;
+  final LatLng endLocation;
+
+  RouteSummary(long endNanos, long dropOffDelayNanos, long extraWaitNanos, LatLng endLocation) {
+    this.endNanos = endNanos;
+    this.dropOffDelayNanos = dropOffDelayNanos;
+    this.extraWaitNanos = extraWaitNanos;
+    this.endLocation = endLocation;
+  }
+
+  static RouteSummary create(PrimitiveRouteGenerator generator) {
+    long dropOffDelayNanos = 0;
+    for (int k = 0; k < generator.dropOffDelaysCount(); k++) {
+      dropOffDelayNanos += generator.dropOffDelayNanos(k);
+    }
+    long extraWaitNanos = 0;
+    for (int k = 0; k < generator.extraWaitCount(); k++) {
+      extraWaitNanos += generator.extraWaitNanos(k);
+    }
+    return new RouteSummary(generator.departureNanos(), dropOffDelayNanos, extraWaitNanos,
+        generator.stop(generator.stopsCount() - 1).location());
+  }
+
+  /**
+   * @return whether this route ends at the same location as the other one, no later and with no
+   *     more delay
+   */
+  boolean dominates(RouteSummary other) {
+    return endNanos <= other.endNanos && dropOffDelayNanos <= other.dropOffDelayNanos
+        && Objects.equals(endLocation, other.endLocation);
+  }
+}
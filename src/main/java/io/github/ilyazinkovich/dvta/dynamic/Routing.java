@@ -4,28 +4,59 @@ import java.time.Duration;
 
 class Routing {
 
-  private static final int EARTH_RADIUS = 6371; // KM
+  static final int EARTH_RADIUS = 6371; // KM
+  private static final double AVG_SPEED_IN_KM_H = 25.0;
 
   static Duration drivingTime(
       LatLng origin, LatLng destination) {
-    double avgSpeedInKmH = 25.0;
+    return Duration.ofSeconds(drivingSeconds(
+        origin.lat, origin.lng, Math.cos(Math.toRadians(origin.lat)),
+        destination.lat, destination.lng, Math.cos(Math.toRadians(destination.lat))));
+  }
+
+  static double straightLineDistanceKm(LatLng origin, LatLng destination) {
+    return straightLineDistance(
+        origin.lat, origin.lng, Math.cos(Math.toRadians(origin.lat)),
+        destination.lat, destination.lng, Math.cos(Math.toRadians(destination.lat)));
+  }
+
+  /**
+   * Batch variant of {@link #drivingTime} over coordinate arrays. The cosines of the latitudes
+   * are computed once per location instead of once per pair.
+   */
+  static void drivingSeconds(
+      double[] originLat, double[] originLng,
+      double[] destinationLat, double[] destinationLng,
+      long[] seconds) {
+    double[] originCosLat = cosLat(originLat);
+    double[] destinationCosLat = cosLat(destinationLat);
+    int destinations = destinationLat.length;
+    for (int i = 0; i < originLat.length; i++) {
+      for (int j = 0; j < destinations; j++) {
+        seconds[i * destinations + j] = drivingSeconds(
+            originLat[i], originLng[i], originCosLat[i],
+            destinationLat[j], destinationLng[j], destinationCosLat[j]);
+      }
+    }
+  }
+
+  private static long drivingSeconds(
+      double startLat, double startLong, double cosStartLat,
+      double endLat, double endLong, double cosEndLat) {
     double distanceKm =
-        straightLineDistance(origin.lat, origin.lng, destination.lat, destination.lng);
-    return Duration.ofSeconds(Math.round(distanceKm * 1000 / (avgSpeedInKmH * 1000 / 3600)));
+        straightLineDistance(startLat, startLong, cosStartLat, endLat, endLong, cosEndLat);
+    return Math.round(distanceKm * 1000 / (AVG_SPEED_IN_KM_H * 1000 / 3600));
   }
 
   private static double straightLineDistance(
-      double startLat, double startLong,
-      double endLat, double endLong
+      double startLat, double startLong, double cosStartLat,
+      double endLat, double endLong, double cosEndLat
   ) {
 
     double dLat = Math.toRadians((endLat - startLat));
     double dLong = Math.toRadians((endLong - startLong));
 
-    startLat = Math.toRadians(startLat);
-    endLat = Math.toRadians(endLat);
-
-    double a = haversin(dLat) + Math.cos(startLat) * Math.cos(endLat) * haversin(dLong);
+    double a = haversin(dLat) + cosStartLat * cosEndLat * haversin(dLong);
     double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
 
     return EARTH_RADIUS * c;
@@ -34,4 +65,12 @@ class Routing {
   private static double haversin(double val) {
     return Math.pow(Math.sin(val / 2), 2);
   }
+
+  private static double[] cosLat(double[] lat) {
+    double[] cosLat = new double[lat.length];
+    for (int i = 0; i < lat.length; i++) {
+      cosLat[i] = Math.cos(Math.toRadians(lat[i]));
+    }
+    return cosLat;
+  }
 }
@@ -0,0 +1,315 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of an OSRM-style table service. Single legs requested within a batch window are sent
+ * together as one {@code /table/v1/driving} call, identical legs that are already in flight share
+ * the same response, and answered legs are kept in a local cache. Unreachable legs get
+ * {@link ContractionHierarchy#UNREACHABLE} seconds. Every leg of a batch is completed, with an
+ * error if the call fails, times out or its response lacks the leg.
+ */
+class RoutingServiceDrivingTimeMatrix implements DrivingTimeMatrix, AutoCloseable {
+
+  private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  private final URI baseUri;
+  private final HttpClient httpClient;
+  private final Duration requestTimeout;
+  private final Duration batchWindow;
+  private final int maxBatchSize;
+  private final Cache<Leg, Integer> cache;
+  private final Map<Leg, CompletableFuture<Integer>> inFlight;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong tableRequests;
+  private List<Leg> pending;
+  private ScheduledFuture<?> scheduledFlush;
+
+  /**
+   * @param baseUri address of the service, e.g. {@code http://localhost:5000}
+   * @param batchWindow time to wait for more legs after the first leg of a batch
+   * @param maxBatchSize number of legs that triggers a table call before the window ends
+   * @param maximumCacheSize maximum number of cached legs
+   */
+  RoutingServiceDrivingTimeMatrix(
+      URI baseUri, Duration batchWindow, int maxBatchSize, long maximumCacheSize) {
+    this(baseUri, batchWindow, maxBatchSize, maximumCacheSize, DEFAULT_REQUEST_TIMEOUT);
+  }
+
+  /**
+   * @param requestTimeout limit on connecting to the service and on each table call
+   */
+  RoutingServiceDrivingTimeMatrix(URI baseUri, Duration batchWindow, int maxBatchSize,
+      long maximumCacheSize, Duration requestTimeout) {
+    this.baseUri = baseUri;
+    this.httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+    this.requestTimeout = requestTimeout;
+    this.batchWindow = batchWindow;
+    this.maxBatchSize = maxBatchSize;
+    this.cache = Caffeine.newBuilder().maximumSize(maximumCacheSize).build();
+    this.inFlight = new ConcurrentHashMap<>();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "routing-service-batcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.tableRequests = new AtomicLong();
+    this.pending = new ArrayList<>();
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    return Duration.ofSeconds(join(drivingSecondsAsync(origin, destination)));
+  }
+
+  /**
+   * Requests all legs before waiting for any of them, so they end up in as few table calls as
+   * the batch size allows.
+   */
+  @Override
+  public void drivingTimes(LatLng[] origins, LatLng[] destinations, long[] seconds) {
+    List<CompletableFuture<Integer>> futures = new ArrayList<>(seconds.length);
+    for (LatLng origin : origins) {
+      for (LatLng destination : destinations) {
+        futures.add(drivingSecondsAsync(origin, destination));
+      }
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      seconds[i] = join(futures.get(i));
+    }
+  }
+
+  CompletableFuture<Integer> drivingSecondsAsync(LatLng origin, LatLng destination) {
+    Leg leg = new Leg(origin, destination);
+    Integer cached = cache.getIfPresent(leg);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    CompletableFuture<Integer> created = new CompletableFuture<>();
+    CompletableFuture<Integer> existing = inFlight.putIfAbsent(leg, created);
+    if (existing != null) {
+      return existing;
+    }
+    cached = cache.getIfPresent(leg);
+    if (cached != null) {
+      inFlight.remove(leg, created);
+      created.complete(cached);
+      return created;
+    }
+    enqueue(leg);
+    return created;
+  }
+
+  /**
+   * @return number of table calls sent to the service
+   */
+  long tableRequests() {
+    return tableRequests.get();
+  }
+
+  @Override
+  public void close() {
+    flush();
+    scheduler.shutdown();
+  }
+
+  private void enqueue(Leg leg) {
+    boolean full;
+    synchronized (this) {
+      pending.add(leg);
+      full = pending.size() >= maxBatchSize;
+      if (!full && scheduledFlush == null) {
+        scheduledFlush =
+            scheduler.schedule(this::flush, batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+      }
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    List<Leg> batch;
+    synchronized (this) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new ArrayList<>();
+    }
+    Map<LatLng, Integer> sources = new LinkedHashMap<>();
+    Map<LatLng, Integer> destinations = new LinkedHashMap<>();
+    for (Leg leg : batch) {
+      sources.putIfAbsent(leg.origin, sources.size());
+      destinations.putIfAbsent(leg.destination, destinations.size());
+    }
+    tableRequests.incrementAndGet();
+    try {
+      httpClient.sendAsync(tableRequest(sources, destinations), BodyHandlers.ofString())
+          .thenApply(RoutingServiceDrivingTimeMatrix::durations)
+          .whenComplete((durations, e) -> complete(batch, sources, destinations, durations, e));
+    } catch (RuntimeException e) {
+      complete(batch, sources, destinations, null, e);
+    }
+  }
+
+  /**
+   * Completes the future of every leg of the batch, failing the legs the durations lack.
+   */
+  private void complete(List<Leg> batch, Map<LatLng, Integer> sources,
+      Map<LatLng, Integer> destinations, int[][] durations, Throwable failure) {
+    for (Leg leg : batch) {
+      CompletableFuture<Integer> future = inFlight.get(leg);
+      if (future == null) {
+        continue;
+      }
+      if (failure != null) {
+        future.completeExceptionally(failure);
+      } else {
+        try {
+          int seconds = durations[sources.get(leg.origin)][destinations.get(leg.destination)];
+          cache.put(leg, seconds);
+          future.complete(seconds);
+        } catch (RuntimeException e) {
+          future.completeExceptionally(
+              new RuntimeException("Unable to find driving time of leg in response", e));
+        }
+      }
+      // Removed last, so a concurrent lookup either joins this future or hits the cache.
+      inFlight.remove(leg, future);
+    }
+  }
+
+  private HttpRequest tableRequest(
+      Map<LatLng, Integer> sources, Map<LatLng, Integer> destinations) {
+    StringBuilder coordinates = new StringBuilder();
+    StringBuilder sourceIndices = new StringBuilder();
+    StringBuilder destinationIndices = new StringBuilder();
+    int index = 0;
+    for (LatLng source : sources.keySet()) {
+      append(coordinates, source);
+      sourceIndices.append(sourceIndices.length() == 0 ? "" : ";").append(index++);
+    }
+    for (LatLng destination : destinations.keySet()) {
+      append(coordinates, destination);
+      destinationIndices.append(destinationIndices.length() == 0 ? "" : ";").append(index++);
+    }
+    URI uri = baseUri.resolve("/table/v1/driving/" + coordinates
+        + "?sources=" + sourceIndices + "&destinations=" + destinationIndices);
+    return HttpRequest.newBuilder(uri).timeout(requestTimeout).GET().build();
+  }
+
+  private static void append(StringBuilder coordinates, LatLng location) {
+    if (coordinates.length() > 0) {
+      coordinates.append(';');
+    }
+    coordinates.append(location.lng).append(',').append(location.lat);
+  }
+
+  /**
+   * Reads the {@code durations} array of a table response, rounding to whole seconds.
+   */
+  private static int[][] durations(HttpResponse<String> response) {
+    if (response.statusCode() != 200) {
+      throw new RuntimeException("Unable to fetch driving times, status "
+          + response.statusCode() + ": " + response.body());
+    }
+    String body = response.body();
+    int key = body.indexOf("\"durations\"");
+    if (key < 0) {
+      throw new RuntimeException("Unable to find durations in " + body);
+    }
+    int position = body.indexOf('[', key) + 1;
+    List<int[]> rows = new ArrayList<>();
+    List<Integer> row = new ArrayList<>();
+    boolean inRow = false;
+    while (position < body.length()) {
+      char c = body.charAt(position);
+      if (c == '[') {
+        inRow = true;
+        row.clear();
+        position++;
+      } else if (c == ']') {
+        if (!inRow) {
+          break;
+        }
+        rows.add(row.stream().mapToInt(seconds -> seconds).toArray());
+        inRow = false;
+        position++;
+      } else if (c == ',' || Character.isWhitespace(c)) {
+        position++;
+      } else {
+        int end = position;
+        while (end < body.length() && ",] \t\r\n".indexOf(body.charAt(end)) < 0) {
+          end++;
+        }
+        String value = body.substring(position, end);
+        row.add(value.equals("null")
+            ? ContractionHierarchy.UNREACHABLE
+            : (int) Math.round(Double.parseDouble(value)));
+        position = end;
+      }
+    }
+    return rows.toArray(new int[0][]);
+  }
+
+  private static int join(CompletableFuture<Integer> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw new RuntimeException("Unable to fetch driving time.", e.getCause());
+    }
+  }
+
+  private static final class Leg {
+
+    final LatLng origin;
+    final LatLng destination;
+
+    Leg(LatLng origin, LatLng destination) {
+      this.origin = origin;
+      this.destination = destination;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Leg leg = (Leg) o;
+      return origin.equals(leg.origin) && destination.equals(leg.destination);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(origin, destination);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Time-dependent driving times kept as one dense matrix per equal time-of-day bucket (UTC), e.g.
+ * 24 hourly slabs. Each slab holds the driving times at the middle of its bucket, and times in
+ * between are linearly interpolated from the two nearest slabs.
+ */
+class SlabDrivingTimeMatrix implements TimeDependentDrivingTimeMatrix, IndexedDrivingTimeMatrix {
+
+  private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+  private final DenseDrivingTimeMatrix[] slabs;
+  private final int bucketSeconds;
+
+  SlabDrivingTimeMatrix(List<DenseDrivingTimeMatrix> slabs) {
+    if (slabs.isEmpty() || SECONDS_PER_DAY % slabs.size() != 0) {
+      throw new IllegalArgumentException("Slabs must split a day evenly: " + slabs.size());
+    }
+    this.slabs = slabs.toArray(DenseDrivingTimeMatrix[]::new);
+    this.bucketSeconds = SECONDS_PER_DAY / slabs.size();
+  }
+
+  /**
+   * @param requests requests whose locations are covered
+   * @param drivingTimeMatrices source of the driving times of every bucket, in time-of-day order
+   */
+  static SlabDrivingTimeMatrix create(
+      Collection<Request> requests, List<? extends DrivingTimeMatrix> drivingTimeMatrices) {
+    return new SlabDrivingTimeMatrix(drivingTimeMatrices.stream()
+        .map(drivingTimeMatrix -> DenseDrivingTimeMatrix.create(requests, drivingTimeMatrix))
+        .collect(Collectors.toList()));
+  }
+
+  @Override
+  public int drivingSeconds(int originId, int destinationId, long departureEpochSecond) {
+    long offset = Math.floorMod(departureEpochSecond - bucketSeconds / 2, SECONDS_PER_DAY);
+    int slab = (int) (offset / bucketSeconds);
+    long fraction = offset % bucketSeconds;
+    long before = slabs[slab].drivingSeconds(originId, destinationId);
+    long after = slabs[(slab + 1) % slabs.length].drivingSeconds(originId, destinationId);
+    return (int) ((before * (bucketSeconds - fraction) + after * fraction + bucketSeconds / 2)
+        / bucketSeconds);
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination, Instant departure) {
+    Integer originId = slabs[0].id(origin);
+    Integer destinationId = slabs[0].id(destination);
+    if (originId == null || destinationId == null) {
+      return slabs[slab(departure.getEpochSecond())].drivingTime(origin, destination);
+    }
+    return Duration.ofSeconds(
+        drivingSeconds(originId, destinationId, departure.getEpochSecond()));
+  }
+
+  @Override
+  public boolean indexes(int locationId, LatLng location) {
+    return slabs[0].indexes(locationId, location);
+  }
+
+  /**
+   * @return the shortest driving time over the day, as time-independent lookups have no
+   *     departure time
+   */
+  @Override
+  public int drivingSeconds(int originId, int destinationId) {
+    int seconds = Integer.MAX_VALUE;
+    for (DenseDrivingTimeMatrix slab : slabs) {
+      seconds = Math.min(seconds, slab.drivingSeconds(originId, destinationId));
+    }
+    return seconds;
+  }
+
+  @Override
+  public Duration drivingTime(LatLng origin, LatLng destination) {
+    Duration drivingTime = slabs[0].drivingTime(origin, destination);
+    for (int slab = 1; slab < slabs.length; slab++) {
+      Duration slabDrivingTime = slabs[slab].drivingTime(origin, destination);
+      if (slabDrivingTime.compareTo(drivingTime) < 0) {
+        drivingTime = slabDrivingTime;
+      }
+    }
+    return drivingTime;
+  }
+
+  private int slab(long epochSecond) {
+    return Math.floorMod(epochSecond, SECONDS_PER_DAY) / bucketSeconds;
+  }
+}
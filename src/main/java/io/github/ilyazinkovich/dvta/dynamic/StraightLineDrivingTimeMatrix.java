@@ -8,4 +8,35 @@ class StraightLineDrivingTimeMatrix implements DrivingTimeMatrix {
   public Duration drivingTime(LatLng origin, LatLng destination) {
     return Routing.drivingTime(origin, destination);
   }
+
+  @Override
+  public void drivingTimes(LatLng[] origins, LatLng[] destinations, long[] seconds) {
+    Routing.drivingSeconds(lat(origins), lng(origins), lat(destinations), lng(destinations),
+        seconds);
+  }
+
+  /**
+   * Great-circle times satisfy the triangle inequality, and rounding every leg to whole seconds
+   * breaks it by at most a second.
+   */
+  @Override
+  public long triangleSlackSeconds() {
+    return 1;
+  }
+
+  private static double[] lat(LatLng[] locations) {
+    double[] lat = new double[locations.length];
+    for (int i = 0; i < locations.length; i++) {
+      lat[i] = locations[i].lat;
+    }
+    return lat;
+  }
+
+  private static double[] lng(LatLng[] locations) {
+    double[] lng = new double[locations.length];
+    for (int i = 0; i < locations.length; i++) {
+      lng[i] = locations[i].lng;
+    }
+    return lng;
+  }
 }
@@ -0,0 +1,9 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.time.Duration;
+import java.time.Instant;
+
+interface TimeDependentDrivingTimeMatrix extends DrivingTimeMatrix {
+
+  Duration drivingTime(LatLng origin, LatLng destination, Instant departure);
+}
@@ -0,0 +1,316 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import io.github.ilyazinkovich.dvta.dynamic.PrimitiveRouteGenerator.StopState;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link TripCatalog} that stores the routes of its trips in a prefix trie of route stops rather
+ * than as trips. Routes that insert a request into the same trip share the prefix before the
+ * pick-up, and each node is the {@link StopState} of the generator after its stop, so a route is
+ * only evaluated from its first stop missing from the trie, and the generator resumes there
+ * without looking up a driving time again.
+ *
+ * <p>A node holds its stop, five times and three links. Most pick-ups are inserted close to the
+ * start of a route, so shared prefixes are short and the trie takes about as much memory as the
+ * trips of a {@link TripCatalog}; what it saves is evaluation.
+ *
+ * <p>Every route starts at the pick-up time window start of its first request, and trips are
+ * built from the trie when asked for, without schedules.
+ */
+class TrieTripCatalog {
+
+  private final int maxTripRequests;
+  private final RequestTable requestTable;
+  private final PrimitiveRouteGenerator generator;
+  private final long triangleSlackSeconds;
+  private final Node root;
+  private final Set<Request> requests;
+  private final Map<Integer, Set<Node>> tripsPerRequestsCount;
+  private final Map<Request, Set<Node>> tripsPerRequest;
+  private StopState[] path;
+  private int nodesCount;
+
+  TrieTripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix) {
+    this(maxTripRequests, drivingTimeMatrix, null, null);
+  }
+
+  TrieTripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
+    this.maxTripRequests = maxTripRequests;
+    this.requestTable = new RequestTable();
+    this.generator = new PrimitiveRouteGenerator(
+        Instant.EPOCH, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits);
+    this.triangleSlackSeconds = TripPermutations.triangleSlackSeconds(drivingTimeMatrix);
+    this.root = new Node(null, null);
+    this.requests = new HashSet<>();
+    this.tripsPerRequestsCount = new HashMap<>();
+    for (int i = 1; i <= maxTripRequests; i++) {
+      tripsPerRequestsCount.put(i, new HashSet<>());
+    }
+    this.tripsPerRequest = new HashMap<>();
+    this.path = new StopState[2 * maxTripRequests];
+  }
+
+  void add(Request request) {
+    if (requests.contains(request)) {
+      return;
+    }
+    int handle = requestTable.add(request);
+    RouteStop pickUp = requestTable.pickUp(handle);
+    RouteStop dropOff = requestTable.dropOff(handle);
+    if (insert(root, new Node[0], 0, pickUp, dropOff, 1) == null) {
+      requestTable.remove(request);
+      System.err.println(
+          "Failed to generate route - " + generator.failureReason() + " - " + request);
+      return;
+    }
+    requests.add(request);
+    for (int i = 1; i < maxTripRequests; i++) {
+      List<Node> extended = new ArrayList<>();
+      for (Node trip : tripsPerRequestsCount.get(i)) {
+        if (!trip.contains(handle)) {
+          extend(trip, pickUp, dropOff, extended);
+        }
+      }
+      extended.forEach(this::addTrip);
+    }
+  }
+
+  /**
+   * Inserts the pick-up and drop-off at the {@link InsertionPoints} of the route of the trip.
+   */
+  private void extend(Node trip, RouteStop pickUp, RouteStop dropOff, List<Node> extended) {
+    Node[] route = new Node[trip.depth];
+    RouteStop[] stops = new RouteStop[trip.depth];
+    for (Node node = trip; node != root; node = node.parent) {
+      route[node.depth - 1] = node;
+      stops[node.depth - 1] = node.stop();
+    }
+    InsertionPoints points = new InsertionPoints(route.length,
+        TripPermutations.monotone(stops, pickUp, dropOff, triangleSlackSeconds));
+    while (points.next()) {
+      int i = points.pickUp();
+      Node node = insert(
+          i == 0 ? root : route[i - 1], route, i, pickUp, dropOff, points.dropOff(), points);
+      if (node != null && !node.trip) {
+        node.trip = true;
+        extended.add(node);
+      }
+    }
+  }
+
+  private Node insert(Node node, Node[] route, int pickUpIndex, RouteStop pickUp,
+      RouteStop dropOff, int dropOffIndex) {
+    Node inserted = insert(node, route, pickUpIndex, pickUp, dropOff, dropOffIndex, null);
+    if (inserted != null && !inserted.trip) {
+      inserted.trip = true;
+      addTrip(inserted);
+    }
+    return inserted;
+  }
+
+  /**
+   * Walks down the trie from the node along the route with the pick-up and drop-off inserted at
+   * the indices, and evaluates the stops missing from the trie on the generator, resumed at the
+   * last node found. The nodes of the evaluated stops are only attached if the route succeeds.
+   *
+   * @return node of the last stop, or {@code null} if the route failed, which is reported to
+   *     the insertion points unless they are {@code null}
+   */
+  private Node insert(Node node, Node[] route, int pickUpIndex, RouteStop pickUp,
+      RouteStop dropOff, int dropOffIndex, InsertionPoints points) {
+    List<Node> evaluated = new ArrayList<>();
+    for (int k = pickUpIndex; k < route.length + 2; k++) {
+      RouteStop stop = k == pickUpIndex ? pickUp : k == dropOffIndex ? dropOff
+          : route[k < dropOffIndex ? k - 1 : k - 2].stop();
+      Node child = evaluated.isEmpty() ? node.child(stop) : null;
+      if (child != null) {
+        node = child;
+        continue;
+      }
+      if (evaluated.isEmpty()) {
+        resume(node, stop);
+      }
+      generator.add(stop);
+      if (generator.failed()) {
+        if (points != null) {
+          points.failed(generator.failedStopIndex(), generator.failureReason());
+        }
+        return null;
+      }
+      Node next = new Node(node, stop);
+      generator.stopState(next);
+      evaluated.add(next);
+      node = next;
+    }
+    for (Node attached : evaluated) {
+      attached.parent.attach(attached);
+      nodesCount++;
+    }
+    return node;
+  }
+
+  /**
+   * Resumes the generator at the route of the node, or starts a route with the stop at the
+   * root.
+   */
+  private void resume(Node node, RouteStop first) {
+    if (node == root) {
+      generator.reset(first.request.pickUpTimeWindowStart);
+      return;
+    }
+    if (path.length < node.depth) {
+      path = new StopState[2 * node.depth];
+    }
+    for (Node ancestor = node; ancestor != root; ancestor = ancestor.parent) {
+      path[ancestor.depth - 1] = ancestor;
+    }
+    generator.resume(path, node.depth);
+  }
+
+  private void addTrip(Node trip) {
+    tripsPerRequestsCount.get(trip.requestsCount).add(trip);
+    for (Node node = trip; node != root; node = node.parent) {
+      if (node.stop().type == RouteStop.Type.PICK_UP) {
+        tripsPerRequest.computeIfAbsent(node.stop().request, key -> new HashSet<>()).add(trip);
+      }
+    }
+  }
+
+  /**
+   * Removes the request, every trip containing it and the nodes only those trips used.
+   *
+   * @return whether the request was in the catalog
+   */
+  boolean remove(Request request) {
+    if (!requests.remove(request)) {
+      return false;
+    }
+    Set<Node> trips = tripsPerRequest.remove(request);
+    if (trips != null) {
+      for (Node trip : trips) {
+        trip.trip = false;
+        tripsPerRequestsCount.get(trip.requestsCount).remove(trip);
+        for (Node node = trip; node != root; node = node.parent) {
+          Set<Node> tripsOfRequest = node.stop().type == RouteStop.Type.PICK_UP
+              ? tripsPerRequest.get(node.stop().request) : null;
+          if (tripsOfRequest != null) {
+            tripsOfRequest.remove(trip);
+          }
+        }
+        for (Node node = trip; node != root && !node.trip && node.firstChild == null;
+            node = node.parent) {
+          node.parent.detach(node);
+          nodesCount--;
+        }
+      }
+    }
+    requestTable.remove(request);
+    return true;
+  }
+
+  Set<Request> requests() {
+    return requests;
+  }
+
+  /**
+   * @return number of route stops stored, shared by the trips whose routes start with them
+   */
+  int nodesCount() {
+    return nodesCount;
+  }
+
+  /**
+   * @return trips built from the trie, which the catalog does not keep
+   */
+  Map<Integer, Set<Trip>> tripsPerRequestsCount() {
+    Map<Integer, Set<Trip>> trips = new HashMap<>();
+    tripsPerRequestsCount.forEach((requestsCount, nodes) -> {
+      Set<Trip> tripsOfSize = new HashSet<>();
+      nodes.forEach(node -> tripsOfSize.add(trip(node)));
+      trips.put(requestsCount, tripsOfSize);
+    });
+    return trips;
+  }
+
+  Set<Trip> trips(Request request) {
+    Set<Trip> trips = new HashSet<>();
+    tripsPerRequest.getOrDefault(request, Collections.emptySet())
+        .forEach(node -> trips.add(trip(node)));
+    return trips;
+  }
+
+  private Trip trip(Node node) {
+    resume(node, null);
+    return new Trip(generator.requests(), generator.stops(), null,
+        RouteSummary.create(generator));
+  }
+
+  /**
+   * Node of the trie, the children of which are linked through their next siblings.
+   */
+  private static final class Node extends StopState {
+
+    private final Node parent;
+    private final int depth;
+    private final int requestsCount;
+    private Node firstChild;
+    private Node nextSibling;
+    private boolean trip;
+
+    /**
+     * Node of the stop below the parent, whose stop state is still to be saved.
+     */
+    Node(Node parent, RouteStop stop) {
+      this.parent = parent;
+      this.depth = parent == null ? 0 : parent.depth + 1;
+      this.requestsCount = parent == null ? 0
+          : parent.requestsCount + (stop.type == RouteStop.Type.PICK_UP ? 1 : 0);
+    }
+
+    Node child(RouteStop stop) {
+      for (Node child = firstChild; child != null; child = child.nextSibling) {
+        if (child.stop().equals(stop)) {
+          return child;
+        }
+      }
+      return null;
+    }
+
+    void attach(Node child) {
+      child.nextSibling = firstChild;
+      firstChild = child;
+    }
+
+    void detach(Node child) {
+      if (firstChild == child) {
+        firstChild = child.nextSibling;
+        return;
+      }
+      Node previous = firstChild;
+      while (previous.nextSibling != child) {
+        previous = previous.nextSibling;
+      }
+      previous.nextSibling = child.nextSibling;
+    }
+
+    /**
+     * @return whether a pick-up on the way to the node has the handle
+     */
+    boolean contains(int handle) {
+      for (Node node = this; node.parent != null; node = node.parent) {
+        if (node.stop().handle == handle) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
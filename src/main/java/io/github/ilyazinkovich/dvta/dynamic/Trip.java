@@ -8,10 +8,29 @@ class Trip {
 
   final Set<Request> requests;
   final LinkedList<RouteStop> route;
+  /**
+   * Optional arrival times and slack of the route, not part of the identity of the trip.
+   */
+  final TripSchedule schedule;
+  /**
+   * Optional summary of the route, not part of the identity of the trip either.
+   */
+  final RouteSummary summary;
 
   Trip(Set<Request> requests, LinkedList<RouteStop> route) {
+    this(requests, route, null);
+  }
+
+  Trip(Set<Request> requests, LinkedList<RouteStop> route, TripSchedule schedule) {
+    this(requests, route, schedule, null);
+  }
+
+  Trip(Set<Request> requests, LinkedList<RouteStop> route, TripSchedule schedule,
+      RouteSummary summary) {
     this.requests = requests;
     this.route = route;
+    this.schedule = schedule;
+    this.summary = summary;
   }
 
   @Override
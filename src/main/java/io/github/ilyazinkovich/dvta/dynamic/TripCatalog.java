@@ -1,100 +1,261 @@
 package io.github.ilyazinkovich.dvta.dynamic;
 
-import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
-import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
-
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 class TripCatalog {
 
   private final Set<Request> requests;
+  private final RequestTable requestTable;
   private final DrivingTimeMatrix drivingTimeMatrix;
+  private final DrivingTimeLowerBound drivingTimeLowerBound;
   private final int maxTripRequests;
   private final Map<Integer, Set<Trip>> tripsPerRequestsCount;
+  private final Map<Request, Set<Trip>> tripsPerRequest;
+  private final PriorityQueue<Request> dispatchTimeouts;
+  private final Map<Set<Request>, List<Trip>> paretoFronts;
+  private final TripRetention retention;
+  private final RR rr;
+  private final CompatibilityGraph compatibility;
+  private final TripPermutations permutations;
+  private final ThreadLocal<TripPermutations> threadPermutations;
+  private final ForkJoinPool pool;
 
   TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix) {
+    this(maxTripRequests, drivingTimeMatrix, null);
+  }
+
+  TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound) {
+    this(maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, null);
+  }
+
+  /**
+   * @param capacityLimits optional largest load per unit any vehicle can carry, see
+   *     {@link Capacity#limits}, so trips no vehicle can serve are never generated
+   */
+  TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
+    this(maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits, null);
+  }
+
+  /**
+   * @param pool optional pool that extends the trips of each size in parallel, with one
+   *     {@link TripPermutations} per worker thread, so the driving time matrix has to be safe
+   *     for concurrent reads
+   */
+  TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits,
+      ForkJoinPool pool) {
+    this(maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits, pool, false,
+        null);
+  }
+
+  /**
+   * @param paretoPruning whether to keep only the routes of each request set that no other
+   *     route of the set {@link RouteSummary#dominates}, which drops dominated routes before they
+   *     are extended, at the price of the extensions only they would have had
+   * @param retention optional bound on the number of trips of each size, owned by this catalog
+   */
+  TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits,
+      ForkJoinPool pool, boolean paretoPruning, TripRetention retention) {
+    this(maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits, pool,
+        paretoPruning, retention, null);
+  }
+
+  /**
+   * @param rr optional pairs of requests that can share a vehicle, which have to include the
+   *     pairs of a request with the requests of the catalog by the time it is added, so that a
+   *     request only extends the trips whose requests are all paired with it
+   */
+  TripCatalog(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits,
+      ForkJoinPool pool, boolean paretoPruning, TripRetention retention, RR rr) {
     this.requests = new HashSet<>();
+    this.requestTable = new RequestTable();
     this.drivingTimeMatrix = drivingTimeMatrix;
+    this.drivingTimeLowerBound = drivingTimeLowerBound;
     this.maxTripRequests = maxTripRequests;
     this.tripsPerRequestsCount = new HashMap<>();
     for (int i = 1; i <= maxTripRequests; i++) {
       tripsPerRequestsCount.put(i, new HashSet<>());
     }
+    this.tripsPerRequest = new HashMap<>();
+    this.dispatchTimeouts =
+        new PriorityQueue<>(Comparator.comparing((Request request) -> request.dispatchTimeout));
+    this.paretoFronts = paretoPruning ? new HashMap<>() : null;
+    this.retention = retention;
+    this.permutations = new TripPermutations(
+        maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits);
+    this.threadPermutations = ThreadLocal.withInitial(() -> new TripPermutations(
+        maxTripRequests, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits));
+    this.pool = pool;
+    this.rr = rr;
+    this.compatibility = rr == null ? null : new CompatibilityGraph();
   }
 
   void add(Request request) {
-    RouteStop pickUp = new RouteStop(request, PICK_UP);
-    RouteStop dropOff = new RouteStop(request, DROP_OFF);
-    RouteGenerator generator = new RouteGenerator(request.pickUpTimeWindowStart, drivingTimeMatrix)
-        .add(pickUp).add(dropOff);
-    if (generator.failed()) {
+    int handle = requestTable.add(request);
+    RouteStop pickUp = requestTable.pickUp(handle);
+    RouteStop dropOff = requestTable.dropOff(handle);
+    Trip single = permutations.single(request, pickUp, dropOff);
+    if (single == null) {
+      requestTable.remove(request);
       System.err.println(
-          "Failed to generate route - " + generator.failureReason() + " - " + request);
+          "Failed to generate route - " + permutations.failureReason() + " - " + request);
     } else {
-      requests.add(request);
-      LinkedList<RouteStop> route = generator.stops();
-      tripsPerRequestsCount.get(1).add(new Trip(Set.of(request), route));
+      if (requests.add(request) && request.dispatchTimeout != null) {
+        dispatchTimeouts.add(request);
+      }
+      if (compatibility != null) {
+        compatibility.add(handle, rr.partnerHandles(request, requestTable));
+      }
+      addTrip(single);
       for (int i = 1; i < maxTripRequests; i++) {
         Set<Trip> trips = tripsPerRequestsCount.get(i);
-        for (Trip trip : trips) {
-          if (!trip.requests.contains(request)) {
-            List<Trip> permutations = tripPermutations(trip, pickUp, dropOff);
-            tripsPerRequestsCount.get(trip.requests.size() + 1).addAll(permutations);
+        List<Trip> extended;
+        if (pool == null) {
+          extended = new ArrayList<>();
+          for (Trip trip : trips) {
+            if (extendable(trip, request, handle)) {
+              extended.addAll(permutations.of(trip, pickUp, dropOff));
+            }
           }
+        } else {
+          extended = pool.invoke(new PermutationsTask(
+              trips.toArray(Trip[]::new), 0, trips.size(), request, handle, pickUp, dropOff));
         }
+        extended.forEach(this::addTrip);
       }
     }
   }
 
-  private List<Trip> tripPermutations(Trip trip, RouteStop pickUp, RouteStop dropOff) {
-    int start = 0;
-    int end = trip.route.size();
-    List<Trip> permutations = new ArrayList<>();
-    for (int i = start; i <= end; i++) {
-      for (int j = i + 1; j <= end + 1; j++) {
-        RouteGenerator permutation = permute(pickUp, i, dropOff, j, trip.route);
-        if (!permutation.failed()) {
-          permutations.add(new Trip(permutation.requests(), permutation.stops()));
+  /**
+   * @return whether the request is not in the trip and is paired with all of its requests
+   */
+  private boolean extendable(Trip trip, Request request, int handle) {
+    return !trip.requests.contains(request)
+        && (compatibility == null || compatibility.adjacentToAll(handle, trip.route));
+  }
+
+  private void addTrip(Trip trip) {
+    Set<Trip> trips = tripsPerRequestsCount.get(trip.requests.size());
+    if (paretoFronts != null && dominated(trip)
+        || retention != null && !retention.retain(trip, trips, this::removeTrip)) {
+      return;
+    }
+    if (paretoFronts != null) {
+      enterParetoFront(trip);
+    }
+    if (trips.add(trip)) {
+      for (Request request : trip.requests) {
+        tripsPerRequest.computeIfAbsent(request, key -> new HashSet<>()).add(trip);
+      }
+    }
+  }
+
+  /**
+   * @return whether the trip or a route dominating it is in the Pareto front of its requests
+   */
+  private boolean dominated(Trip trip) {
+    List<Trip> front = paretoFronts.get(trip.requests);
+    if (front != null) {
+      for (Trip member : front) {
+        if (member.equals(trip) || member.summary.dominates(trip.summary)) {
+          return true;
         }
       }
     }
-    return permutations;
-  }
-
-  private RouteGenerator permute(
-      RouteStop pickUp, int pickUpInsertionIndex,
-      RouteStop dropOff, int dropOffInsertionIndex,
-      LinkedList<RouteStop> route) {
-    RouteGenerator generator =
-        new RouteGenerator(route.getFirst().request.pickUpTimeWindowStart, drivingTimeMatrix);
-    int i = 0;
-    Iterator<RouteStop> iterator = route.iterator();
-    int size = 2 + route.size();
-    while (i < size) {
-      if (i < pickUpInsertionIndex) {
-        generator.add(iterator.next());
-      } else if (i == pickUpInsertionIndex) {
-        generator.add(pickUp);
-      } else if (i < dropOffInsertionIndex) {
-        generator.add(iterator.next());
-      } else if (i == dropOffInsertionIndex) {
-        generator.add(dropOff);
-      } else {
-        generator.add(iterator.next());
+    return false;
+  }
+
+  /**
+   * Adds the trip to the Pareto front of its requests and removes the trips it dominates from
+   * the catalog.
+   */
+  private void enterParetoFront(Trip trip) {
+    List<Trip> dominated = new ArrayList<>();
+    for (Trip member : paretoFronts.getOrDefault(trip.requests, List.of())) {
+      if (trip.summary.dominates(member.summary)) {
+        dominated.add(member);
       }
-      i++;
-      if (generator.failed()) {
-        break;
+    }
+    dominated.forEach(this::removeTrip);
+    paretoFronts.computeIfAbsent(trip.requests, key -> new ArrayList<>()).add(trip);
+  }
+
+  private void removeTrip(Trip trip) {
+    tripsPerRequestsCount.get(trip.requests.size()).remove(trip);
+    for (Request request : trip.requests) {
+      Set<Trip> trips = tripsPerRequest.get(request);
+      if (trips != null) {
+        trips.remove(trip);
+      }
+    }
+    if (paretoFronts != null) {
+      List<Trip> front = paretoFronts.get(trip.requests);
+      if (front != null && front.remove(trip) && front.isEmpty()) {
+        paretoFronts.remove(trip.requests);
       }
     }
-    return generator;
+  }
+
+  /**
+   * Removes the request and every trip containing it, in time proportional to those trips.
+   *
+   * @return whether the request was in the catalog
+   */
+  boolean remove(Request request) {
+    if (!requests.remove(request)) {
+      return false;
+    }
+    Set<Trip> trips = tripsPerRequest.remove(request);
+    if (trips != null) {
+      for (Trip trip : trips) {
+        removeTrip(trip);
+      }
+    }
+    if (compatibility != null) {
+      compatibility.remove(requestTable.handle(request));
+    }
+    requestTable.remove(request);
+    return true;
+  }
+
+  /**
+   * Removes the requests whose dispatch timeout is not after the given time. Removed requests
+   * stay in the timeout queue until they are due and are skipped then.
+   *
+   * @return expired requests
+   */
+  List<Request> expire(Instant now) {
+    List<Request> expired = new ArrayList<>();
+    while (!dispatchTimeouts.isEmpty() && !dispatchTimeouts.peek().dispatchTimeout.isAfter(now)) {
+      Request request = dispatchTimeouts.poll();
+      if (remove(request)) {
+        expired.add(request);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return trips containing the request, a view that changes with the catalog
+   */
+  Set<Trip> trips(Request request) {
+    Set<Trip> trips = tripsPerRequest.get(request);
+    return trips == null ? Collections.emptySet() : Collections.unmodifiableSet(trips);
   }
 
   Set<Request> requests() {
@@ -104,4 +265,56 @@ class TripCatalog {
   Map<Integer, Set<Trip>> tripsPerRequestsCount() {
     return tripsPerRequestsCount;
   }
+
+  /**
+   * Extends a range of the trips of one size with the request. Ranges are halved until they are
+   * small enough, and the permutations of the halves are concatenated in order.
+   */
+  private final class PermutationsTask extends RecursiveTask<List<Trip>> {
+
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 16;
+
+    private final Trip[] trips;
+    private final int from;
+    private final int to;
+    private final Request request;
+    private final int handle;
+    private final RouteStop pickUp;
+    private final RouteStop dropOff;
+
+    PermutationsTask(Trip[] trips, int from, int to, Request request, int handle,
+        RouteStop pickUp, RouteStop dropOff) {
+      this.trips = trips;
+      this.from = from;
+      this.to = to;
+      this.request = request;
+      this.handle = handle;
+      this.pickUp = pickUp;
+      this.dropOff = dropOff;
+    }
+
+    @Override
+    protected List<Trip> compute() {
+      if (to - from <= THRESHOLD) {
+        TripPermutations permutations = threadPermutations.get();
+        List<Trip> extended = new ArrayList<>();
+        for (int k = from; k < to; k++) {
+          if (extendable(trips[k], request, handle)) {
+            extended.addAll(permutations.of(trips[k], pickUp, dropOff));
+          }
+        }
+        return extended;
+      }
+      int middle = (from + to) >>> 1;
+      PermutationsTask left =
+          new PermutationsTask(trips, from, middle, request, handle, pickUp, dropOff);
+      left.fork();
+      List<Trip> extended =
+          new PermutationsTask(trips, middle, to, request, handle, pickUp, dropOff).compute();
+      List<Trip> leftExtended = left.join();
+      leftExtended.addAll(extended);
+      return leftExtended;
+    }
+  }
 }
@@ -0,0 +1,15 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+/**
+ * Score of a trip for {@link TripRetention}, lower is better.
+ */
+interface TripCost {
+
+  /**
+   * Total drop-off delay plus total extra wait of the route in seconds.
+   */
+  TripCost DELAY_AND_WAIT = trip ->
+      (trip.summary.dropOffDelayNanos + trip.summary.extraWaitNanos) / 1e9;
+
+  double cost(Trip trip);
+}
@@ -0,0 +1,196 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
+
+import io.github.ilyazinkovich.dvta.dynamic.PrimitiveRouteGenerator.Checkpoint;
+import io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the trips of a {@link TripCatalog} on one reusable {@link PrimitiveRouteGenerator},
+ * so an instance must only be used by one thread at a time.
+ */
+class TripPermutations {
+
+  private final int maxTripRequests;
+  private final PrimitiveRouteGenerator generator;
+  private final Checkpoint beforePickUp;
+  private final Checkpoint beforeDropOff;
+  private final boolean schedules;
+  private final long triangleSlackSeconds;
+
+  TripPermutations(int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix,
+      DrivingTimeLowerBound drivingTimeLowerBound, double[] capacityLimits) {
+    this.maxTripRequests = maxTripRequests;
+    this.generator = new PrimitiveRouteGenerator(
+        Instant.EPOCH, drivingTimeMatrix, drivingTimeLowerBound, capacityLimits);
+    this.beforePickUp = new Checkpoint();
+    this.beforeDropOff = new Checkpoint();
+    this.schedules = !(drivingTimeMatrix instanceof TimeDependentDrivingTimeMatrix);
+    this.triangleSlackSeconds = triangleSlackSeconds(drivingTimeMatrix);
+  }
+
+  /**
+   * @return trip of the request alone, or {@code null} if its route fails, see
+   *     {@link #failureReason()}
+   */
+  Trip single(Request request, RouteStop pickUp, RouteStop dropOff) {
+    generator.reset(request.pickUpTimeWindowStart).add(pickUp).add(dropOff);
+    if (generator.failed()) {
+      return null;
+    }
+    return new Trip(
+        Set.of(request), generator.stops(), schedule(1), RouteSummary.create(generator));
+  }
+
+  FailureReason failureReason() {
+    return generator.failureReason();
+  }
+
+  /**
+   * Inserts the pick-up and drop-off at the {@link InsertionPoints} of the route. Permutations
+   * with the same pick-up position share the route prefix, so the prefix is evaluated once and
+   * the generator is restored to it for every branch, and the stop at which a permutation fails
+   * prunes the positions that fail the same way. When the trip has a {@link TripSchedule}, the
+   * drop-off and the rest of the route are only replayed if the drop-off is reached in time and
+   * the delay it causes fits into the forward slack of the next stop.
+   */
+  List<Trip> of(Trip trip, RouteStop pickUp, RouteStop dropOff) {
+    RouteStop[] route = trip.route.toArray(RouteStop[]::new);
+    TripSchedule schedule = trip.schedule != null
+        && trip.schedule.accepts(pickUp, trip) && trip.schedule.accepts(dropOff, trip)
+        ? trip.schedule : null;
+    List<Trip> permutations = new ArrayList<>();
+    InsertionPoints points = new InsertionPoints(
+        route.length, monotone(route, pickUp, dropOff, triangleSlackSeconds));
+    generator.reset(route[0].request.pickUpTimeWindowStart);
+    int pickUpIndex = -1;
+    int next = 0;
+    while (points.next()) {
+      int i = points.pickUp();
+      int j = points.dropOff();
+      if (i != pickUpIndex) {
+        if (pickUpIndex >= 0) {
+          generator.restore(beforePickUp);
+          next = pickUpIndex;
+        }
+        while (next < i && !generator.failed()) {
+          generator.add(route[next++]);
+        }
+        if (!generator.failed()) {
+          generator.checkpoint(beforePickUp);
+          pickUpIndex = i;
+          generator.add(pickUp);
+        }
+      }
+      while (next < j - 1 && !generator.failed()) {
+        generator.add(route[next++]);
+      }
+      if (generator.failed()) {
+        points.failed(generator.failedStopIndex(), generator.failureReason());
+      } else if (schedule == null || fits(schedule, dropOff, route, points)) {
+        generator.checkpoint(beforeDropOff);
+        generator.add(dropOff);
+        for (int k = j - 1; k < route.length && !generator.failed(); k++) {
+          generator.add(route[k]);
+        }
+        if (generator.failed()) {
+          points.failed(generator.failedStopIndex(), generator.failureReason());
+        } else {
+          permutations.add(new Trip(generator.requests(), generator.stops(),
+              schedule(trip.requests.size() + 1), RouteSummary.create(generator)));
+        }
+        generator.restore(beforeDropOff);
+      }
+    }
+    return permutations;
+  }
+
+  /**
+   * Exact check of the drop-off inserted after the stops in the generator, followed by the rest
+   * of the route. A drop-off after its time window end is reported to the insertion points.
+   */
+  private boolean fits(
+      TripSchedule schedule, RouteStop dropOff, RouteStop[] route, InsertionPoints points) {
+    int index = points.dropOff();
+    RouteStop last = generator.stop(generator.stopsCount() - 1);
+    long arrival = generator.arrivalNanos(last, dropOff, generator.departureNanos());
+    Instant windowEnd = dropOff.request.dropOffTimeWindowEnd;
+    if (windowEnd != null && arrival > PrimitiveRouteGenerator.nanos(windowEnd)) {
+      points.failed(index, DROP_OFF_AFTER_TIME_WINDOW_END);
+      return false;
+    }
+    if (index - 1 == route.length) {
+      return true;
+    }
+    long departure = Math.max(arrival,
+        PrimitiveRouteGenerator.nanos(dropOff.request.dropOffTimeWindowStart))
+        + dropOff.request.dropOffServiceTime.toNanos();
+    RouteStop next = route[index - 1];
+    return schedule.absorbs(index - 1, generator.arrivalNanos(dropOff, next, departure));
+  }
+
+  /**
+   * @return triangle slack of the driving times, or {@code -1} if they depend on the departure
+   *     time, so leaving later may mean arriving earlier
+   */
+  static long triangleSlackSeconds(DrivingTimeMatrix drivingTimeMatrix) {
+    return drivingTimeMatrix instanceof TimeDependentDrivingTimeMatrix
+        ? -1 : drivingTimeMatrix.triangleSlackSeconds();
+  }
+
+  /**
+   * A stop inserted one position further back is reached over one more route stop. The detour
+   * saves at most the triangle slack of the driving times and the service time of the route stop
+   * is added, so the stop is never reached earlier when every route stop takes at least the
+   * slack to serve.
+   *
+   * @return whether the pick-up and drop-off may be inserted with monotone
+   *     {@link InsertionPoints}
+   */
+  static boolean monotone(RouteStop[] route, RouteStop pickUp, RouteStop dropOff,
+      long triangleSlackSeconds) {
+    if (triangleSlackSeconds < 0 || !separateStops(route, pickUp, dropOff)) {
+      return false;
+    }
+    Duration slack = Duration.ofSeconds(triangleSlackSeconds);
+    for (RouteStop stop : route) {
+      Duration serviceTime = stop.type == RouteStop.Type.PICK_UP
+          ? stop.request.pickUpServiceTime : stop.request.dropOffServiceTime;
+      if (serviceTime.compareTo(slack) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return whether every stop of the route with the pick-up and drop-off inserted anywhere is
+   *     handled on its own rather than merged with a neighbour at the same location
+   */
+  private static boolean separateStops(RouteStop[] route, RouteStop pickUp, RouteStop dropOff) {
+    if (TripSchedule.windowStart(pickUp) == null || TripSchedule.windowStart(dropOff) == null) {
+      return false;
+    }
+    for (int k = 0; k < route.length; k++) {
+      if (TripSchedule.windowStart(route[k]) == null
+          || k > 0 && TripSchedule.mergesWith(route[k - 1], route[k])
+          || TripSchedule.mergesWith(route[k], pickUp)
+          || TripSchedule.mergesWith(route[k], dropOff)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return schedule of the route in the generator if trips of that size are extended further
+   */
+  private TripSchedule schedule(int requestsCount) {
+    return schedules && requestsCount < maxTripRequests ? TripSchedule.create(generator) : null;
+  }
+}
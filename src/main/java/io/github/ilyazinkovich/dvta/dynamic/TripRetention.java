@@ -0,0 +1,86 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps at most a fixed number of the cheapest trips of each size of two or more requests in a
+ * {@link TripCatalog}, which bounds the catalog and the work of every add. Trips of one request
+ * are always kept, since every request needs at least its own trip.
+ *
+ * <p>The retained trips of a size are in a heap with the most expensive one on top, so a new
+ * trip either evicts it or is rejected in logarithmic time. Trips removed from the catalog for
+ * other reasons stay in the heap until they surface and are skipped then, and the heap is
+ * rebuilt from the retained trips when such leftovers outnumber them.
+ *
+ * <p>Holds the state of one catalog, so it must not be shared between catalogs.
+ */
+class TripRetention {
+
+  private final TripCost tripCost;
+  private final int maxTripsPerSize;
+  private final Map<Integer, PriorityQueue<RankedTrip>> mostExpensiveFirst;
+
+  TripRetention(TripCost tripCost, int maxTripsPerSize) {
+    this.tripCost = tripCost;
+    this.maxTripsPerSize = maxTripsPerSize;
+    this.mostExpensiveFirst = new HashMap<>();
+  }
+
+  /**
+   * @param retained trips of the size of the trip in the catalog
+   * @param evict removes a retained trip from the catalog
+   * @return whether the trip is to be added to the catalog, which is up to the caller
+   */
+  boolean retain(Trip trip, Set<Trip> retained, Consumer<Trip> evict) {
+    int size = trip.requests.size();
+    if (size < 2 || retained.contains(trip)) {
+      return true;
+    }
+    if (maxTripsPerSize <= 0) {
+      return false;
+    }
+    PriorityQueue<RankedTrip> heap = mostExpensiveFirst.computeIfAbsent(size,
+        key -> new PriorityQueue<>(
+            Comparator.comparingDouble((RankedTrip ranked) -> ranked.cost).reversed()));
+    RankedTrip ranked = new RankedTrip(trip, tripCost.cost(trip));
+    if (retained.size() >= maxTripsPerSize) {
+      while (!retained.contains(heap.peek().trip)) {
+        heap.poll();
+      }
+      if (ranked.cost >= heap.peek().cost) {
+        return false;
+      }
+      evict.accept(heap.poll().trip);
+    }
+    heap.add(ranked);
+    if (heap.size() > 2 * Math.max(retained.size() + 1, maxTripsPerSize)) {
+      List<RankedTrip> live = new ArrayList<>();
+      for (RankedTrip entry : heap) {
+        if (entry == ranked || retained.contains(entry.trip)) {
+          live.add(entry);
+        }
+      }
+      heap.clear();
+      heap.addAll(live);
+    }
+    return true;
+  }
+
+  private static final class RankedTrip {
+
+    final Trip trip;
+    final double cost;
+
+    RankedTrip(Trip trip, double cost) {
+      this.trip = trip;
+      this.cost = cost;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Arrival times and forward time slack of the stops of a trip route. The forward slack of a
+ * stop is the largest delay of its arrival that every later stop can absorb, through waiting
+ * for time windows to open, without arriving after a time window end.
+ *
+ * <p>Delays only propagate this simply when every stop is handled on its own, so there is no
+ * schedule for routes with consecutive stops of the same type at the same location or with
+ * stops lacking a time window start.
+ */
+class TripSchedule {
+
+  private final long[] arrivals;
+  private final long[] forwardSlack;
+
+  private TripSchedule(long[] arrivals, long[] forwardSlack) {
+    this.arrivals = arrivals;
+    this.forwardSlack = forwardSlack;
+  }
+
+  /**
+   * @return schedule of the route in the generator, or {@code null} if delays of the route do
+   *     not propagate stop by stop
+   */
+  static TripSchedule create(PrimitiveRouteGenerator generator) {
+    int size = generator.stopsCount();
+    long[] arrivals = new long[size];
+    long[] forwardSlack = new long[size];
+    long slack = Long.MAX_VALUE;
+    for (int k = size - 1; k >= 0; k--) {
+      RouteStop stop = generator.stop(k);
+      if (windowStart(stop) == null
+          || k > 0 && mergesWith(generator.stop(k - 1), stop)) {
+        return null;
+      }
+      arrivals[k] = generator.arrivalNanos(k);
+      long wait = Math.max(0, PrimitiveRouteGenerator.nanos(windowStart(stop)) - arrivals[k]);
+      slack = slack == Long.MAX_VALUE ? slack : slack + wait;
+      Instant windowEnd = windowEnd(stop);
+      if (windowEnd != null) {
+        slack = Math.min(slack, PrimitiveRouteGenerator.nanos(windowEnd) - arrivals[k]);
+      }
+      forwardSlack[k] = slack;
+    }
+    return new TripSchedule(arrivals, forwardSlack);
+  }
+
+  /**
+   * @return whether the route from the stop at the index on stays within its time windows when
+   *     the stop is reached at the given time
+   */
+  boolean absorbs(int index, long arrival) {
+    return arrival - arrivals[index] <= forwardSlack[index];
+  }
+
+  /**
+   * @return whether the stop can be inserted into the route without merging with a neighbour
+   */
+  boolean accepts(RouteStop stop, Trip trip) {
+    if (windowStart(stop) == null) {
+      return false;
+    }
+    for (RouteStop routeStop : trip.route) {
+      if (mergesWith(routeStop, stop)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean mergesWith(RouteStop left, RouteStop right) {
+    return left.type == right.type && left.locationId() != null
+        && Objects.equals(left.locationId(), right.locationId());
+  }
+
+  static Instant windowStart(RouteStop stop) {
+    return stop.type == PICK_UP
+        ? stop.request.pickUpTimeWindowStart : stop.request.dropOffTimeWindowStart;
+  }
+
+  static Instant windowEnd(RouteStop stop) {
+    return stop.type == PICK_UP
+        ? stop.request.pickUpTimeWindowEnd : stop.request.dropOffTimeWindowEnd;
+  }
+}
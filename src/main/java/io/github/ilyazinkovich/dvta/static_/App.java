@@ -7,6 +7,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 class App {
 
@@ -21,7 +22,7 @@ class App {
     int vehicleCapacity = 3;
     List<Vehicle> vehicles =
         VehiclesGenerator.generate(requests, vehiclesCount, vehicleCapacity, random);
-    RR rr = RR.create(requests);
+    RR rr = RR.create(requests, ForkJoinPool.commonPool());
     RV rv = RV.create(requests, vehicles);
     RTV rtv = RTV.create(rr, rv, executor);
     Map<Vehicle, Set<Request>> greedyAssignment = GreedyAssignmentSolver.solve(rtv);
@@ -2,12 +2,19 @@ package io.github.ilyazinkovich.dvta.static_;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 class RR {
 
+  private static final int SWEEP_CHUNK_SIZE = 64;
+
   public final Map<Request, Map<Request, Double>> requestToRequestCost;
 
   public RR(Map<Request, Map<Request, Double>> requestToRequestCost) {
@@ -29,6 +36,42 @@ class RR {
     return rr;
   }
 
+  /**
+   * Builds the same RR as {@link #create(List)} without matching every pair. The pick-up of r2
+   * happens after r1's request time and before r1's latest drop-off, and lies within r2's
+   * waiting window, so only requests whose request time falls between r1's request time minus
+   * the longest waiting window and r1's latest drop-off time are matched with r1. Requests are
+   * sorted by request time to sweep that range, and chunks of r1 are matched on the pool.
+   */
+  public static RR create(List<Request> requests, ForkJoinPool pool) {
+    int[] order = IntStream.range(0, requests.size()).boxed()
+        .sorted(Comparator.comparing(i -> requests.get(i).requestTime))
+        .mapToInt(i -> i).toArray();
+    Instant[] requestTimes = new Instant[order.length];
+    Duration maxWaitTime = Duration.ZERO;
+    for (int k = 0; k < order.length; k++) {
+      Request request = requests.get(order[k]);
+      requestTimes[k] = request.requestTime;
+      Duration waitTime = Duration.between(request.requestTime, request.latestAcceptablePickUpTime);
+      if (waitTime.compareTo(maxWaitTime) > 0) {
+        maxWaitTime = waitTime;
+      }
+    }
+    List<List<Match>> matches = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      matches.add(null);
+    }
+    pool.invoke(new SweepTask(requests, order, requestTimes, maxWaitTime, matches,
+        0, requests.size()));
+    RR rr = new RR(new HashMap<>());
+    for (int i = 0; i < requests.size(); i++) {
+      for (Match match : matches.get(i)) {
+        rr.addRequestToRequest(requests.get(i), requests.get(match.index), match.cost);
+      }
+    }
+    return rr;
+  }
+
   private static Double match(Request r1, Request r2) {
     Instant pickUpTime2 = r1.requestTime
         .plus(Routing.drivingTime(r1.origin, r2.origin));
@@ -87,4 +130,80 @@ class RR {
       r2r1.put(r1, cost);
     }
   }
+
+  private static class Match {
+
+    final int index;
+    final Double cost;
+
+    Match(int index, Double cost) {
+      this.index = index;
+      this.cost = cost;
+    }
+  }
+
+  private static class SweepTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Request> requests;
+    private final int[] order;
+    private final Instant[] requestTimes;
+    private final Duration maxWaitTime;
+    private final List<List<Match>> matches;
+    private final int from;
+    private final int to;
+
+    SweepTask(List<Request> requests, int[] order, Instant[] requestTimes,
+        Duration maxWaitTime, List<List<Match>> matches, int from, int to) {
+      this.requests = requests;
+      this.order = order;
+      this.requestTimes = requestTimes;
+      this.maxWaitTime = maxWaitTime;
+      this.matches = matches;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > SWEEP_CHUNK_SIZE) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new SweepTask(requests, order, requestTimes, maxWaitTime, matches, from, middle),
+            new SweepTask(requests, order, requestTimes, maxWaitTime, matches, middle, to));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        Request r1 = requests.get(i);
+        int first = firstNotBefore(r1.requestTime.minus(maxWaitTime));
+        int last = firstNotBefore(r1.earliestPossibleDropOffTime.plus(r1.maxToleratedDelay));
+        List<Match> r1Matches = new ArrayList<>();
+        for (int k = first; k < last; k++) {
+          Request r2 = requests.get(order[k]);
+          if (!r1.equals(r2)) {
+            Double cost = match(r1, r2);
+            if (cost != null) {
+              r1Matches.add(new Match(order[k], cost));
+            }
+          }
+        }
+        r1Matches.sort(Comparator.comparingInt(match -> match.index));
+        matches.set(i, r1Matches);
+      }
+    }
+
+    private int firstNotBefore(Instant time) {
+      int low = 0;
+      int high = requestTimes.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (requestTimes[middle].isBefore(time)) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
 }
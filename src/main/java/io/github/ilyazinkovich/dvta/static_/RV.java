@@ -1,5 +1,7 @@
 package io.github.ilyazinkovich.dvta.static_;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,6 +9,8 @@ import java.util.Set;
 
 class RV {
 
+  private static final double GRID_CELL_KM = 1.0;
+
   public final Map<Vehicle, Map<Request, Double>> vehicleToRequestCost;
 
   public RV(Map<Vehicle, Map<Request, Double>> vehicleToRequestCost) {
@@ -15,8 +19,25 @@ class RV {
 
   public static RV create(List<Request> requests, List<Vehicle> vehicles) {
     RV rv = new RV(new HashMap<>());
+    if (vehicles.isEmpty()) {
+      return rv;
+    }
+    VehicleGrid grid = new VehicleGrid(vehicles, GRID_CELL_KM);
+    Instant earliestVehicleTime = vehicles.get(0).currentTime;
+    int maxPassengers = 0;
+    for (Vehicle vehicle : vehicles) {
+      if (vehicle.currentTime.isBefore(earliestVehicleTime)) {
+        earliestVehicleTime = vehicle.currentTime;
+      }
+      maxPassengers = Math.max(maxPassengers, vehicle.passengers.size());
+    }
     for (Request r1 : requests) {
-      for (Vehicle vehicle : vehicles) {
+      double radiusKm = reachableKm(
+          earliestVehicleTime, r1.latestAcceptablePickUpTime, maxPassengers + 1);
+      for (Vehicle vehicle : grid.near(r1.origin, radiusKm)) {
+        if (!canReachPickUp(vehicle, r1)) {
+          continue;
+        }
         Double cost = TSP.travel(vehicle, Set.of(r1));
         if (cost != null) {
           rv.addVehicleToRequest(vehicle, r1, cost);
@@ -26,6 +47,21 @@ class RV {
     return rv;
   }
 
+  /**
+   * Whether the pick-up deadline can be met when driving straight to the pick-up. Any route that
+   * drops passengers off first is at least as long, up to rounding each leg to whole seconds.
+   */
+  private static boolean canReachPickUp(Vehicle vehicle, Request request) {
+    double distanceKm = Routing.straightLineDistanceKm(vehicle.currentPosition, request.origin);
+    return distanceKm <= reachableKm(vehicle.currentTime, request.latestAcceptablePickUpTime,
+        vehicle.passengers.size() + 1);
+  }
+
+  private static double reachableKm(Instant from, Instant deadline, int legs) {
+    double seconds = Duration.between(from, deadline).toMillis() / 1000.0 + legs;
+    return seconds * Routing.AVG_SPEED_IN_KM_H / 3600;
+  }
+
   private void addVehicleToRequest(Vehicle v, Request r, Double cost) {
     if (!vehicleToRequestCost.containsKey(v)) {
       vehicleToRequestCost.put(v, new HashMap<>());
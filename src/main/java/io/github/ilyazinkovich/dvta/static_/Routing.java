@@ -4,13 +4,16 @@ import java.time.Duration;
 
 class Routing {
 
-  private static final int EARTH_RADIUS = 6371; // KM
+  static final int EARTH_RADIUS = 6371; // KM
+  static final double AVG_SPEED_IN_KM_H = 25.0;
 
   static Duration drivingTime(LatLng origin, LatLng destination) {
-    double avgSpeedInKmH = 25.0;
-    double distanceKm =
-        straightLineDistance(origin.lat, origin.lng, destination.lat, destination.lng);
-    return Duration.ofSeconds(Math.round(distanceKm * 1000 / (avgSpeedInKmH * 1000 / 3600)));
+    double distanceKm = straightLineDistanceKm(origin, destination);
+    return Duration.ofSeconds(Math.round(distanceKm * 1000 / (AVG_SPEED_IN_KM_H * 1000 / 3600)));
+  }
+
+  static double straightLineDistanceKm(LatLng origin, LatLng destination) {
+    return straightLineDistance(origin.lat, origin.lng, destination.lat, destination.lng);
   }
 
   private static double straightLineDistance(
@@ -0,0 +1,80 @@
+package io.github.ilyazinkovich.dvta.static_;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the current positions of vehicles. Cells are square in degrees, so a radius
+ * query visits the cells of the bounding box of the circle, padded by one cell, and keeps the
+ * vehicles that are really within the radius.
+ */
+class VehicleGrid {
+
+  private static final double KM_PER_DEGREE = Routing.EARTH_RADIUS * Math.PI / 180;
+  private static final double MIN_COS_LAT = 0.01;
+
+  private final double cellDegrees;
+  private final Map<Long, List<Vehicle>> cells;
+
+  VehicleGrid(List<Vehicle> vehicles, double cellKm) {
+    this.cellDegrees = cellKm / KM_PER_DEGREE;
+    this.cells = new HashMap<>();
+    for (Vehicle vehicle : vehicles) {
+      LatLng position = vehicle.currentPosition;
+      cells.computeIfAbsent(key(cell(position.lat), cell(position.lng)),
+          key -> new ArrayList<>()).add(vehicle);
+    }
+  }
+
+  /**
+   * @return vehicles whose current position is at most {@code radiusKm} away from the location
+   */
+  List<Vehicle> near(LatLng location, double radiusKm) {
+    List<Vehicle> vehicles = new ArrayList<>();
+    if (radiusKm < 0) {
+      return vehicles;
+    }
+    double latDegrees = radiusKm / KM_PER_DEGREE;
+    double maxAbsLat = Math.min(90, Math.abs(location.lat) + latDegrees);
+    double cosLat = Math.max(MIN_COS_LAT, Math.cos(Math.toRadians(maxAbsLat)));
+    double lngDegrees = Math.min(180, latDegrees / cosLat);
+    long minRow = cell(location.lat - latDegrees) - 1;
+    long maxRow = cell(location.lat + latDegrees) + 1;
+    long minColumn = cell(location.lng - lngDegrees) - 1;
+    long maxColumn = cell(location.lng + lngDegrees) + 1;
+    if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > cells.size()) {
+      for (List<Vehicle> cell : cells.values()) {
+        addNear(cell, location, radiusKm, vehicles);
+      }
+      return vehicles;
+    }
+    for (long row = minRow; row <= maxRow; row++) {
+      for (long column = minColumn; column <= maxColumn; column++) {
+        List<Vehicle> cell = cells.get(key(row, column));
+        if (cell != null) {
+          addNear(cell, location, radiusKm, vehicles);
+        }
+      }
+    }
+    return vehicles;
+  }
+
+  private static void addNear(
+      List<Vehicle> cell, LatLng location, double radiusKm, List<Vehicle> vehicles) {
+    for (Vehicle vehicle : cell) {
+      if (Routing.straightLineDistanceKm(vehicle.currentPosition, location) <= radiusKm) {
+        vehicles.add(vehicle);
+      }
+    }
+  }
+
+  private long cell(double degrees) {
+    return (long) Math.floor(degrees / cellDegrees);
+  }
+
+  private static long key(long row, long column) {
+    return (row << 32) ^ (column & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,67 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CachingDrivingTimeMatrixTest {
+
+  @Test
+  public void repeatedLegIsLoadedOnce() {
+    DrivingTimeMatrix drivingTimeMatrix = mock(DrivingTimeMatrix.class);
+    Duration drivingTime = Duration.ofMinutes(10);
+    when(drivingTimeMatrix.drivingTime(any(), any())).thenReturn(drivingTime);
+    LocationIndex locations = new LocationIndex();
+    LatLng origin = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng destination = new LatLng(40.701595306396484, -74.012008666992188);
+    int originId = locations.intern(origin);
+    int destinationId = locations.intern(destination);
+    CachingDrivingTimeMatrix matrix =
+        new CachingDrivingTimeMatrix(drivingTimeMatrix, locations, 10);
+    assertEquals(drivingTime, matrix.drivingTime(origin, destination));
+    assertEquals(drivingTime.getSeconds(), matrix.drivingSeconds(originId, destinationId));
+    assertEquals(drivingTime.getSeconds(), matrix.drivingSeconds(originId, destinationId));
+    verify(drivingTimeMatrix, times(1)).drivingTime(origin, destination);
+    assertEquals(1, matrix.stats().missCount());
+    assertEquals(2, matrix.stats().hitCount());
+  }
+
+  @Test
+  public void sizeStaysBounded() {
+    LocationIndex locations = new LocationIndex();
+    for (int i = 0; i < 20; i++) {
+      locations.intern(new LatLng(40.7 + i * 0.001, -73.9));
+    }
+    CachingDrivingTimeMatrix matrix =
+        new CachingDrivingTimeMatrix(new StraightLineDrivingTimeMatrix(), locations, 50);
+    for (int origin = 0; origin < locations.size(); origin++) {
+      for (int destination = 0; destination < locations.size(); destination++) {
+        matrix.drivingSeconds(origin, destination);
+      }
+    }
+    assertTrue(matrix.size() <= 50);
+    assertTrue(matrix.stats().evictionCount() > 0);
+  }
+
+  @Test
+  public void onlyIdsOfTheLocationIndexAreIndexed() {
+    LocationIndex locations = new LocationIndex();
+    LatLng location = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng otherLocation = new LatLng(40.701595306396484, -74.012008666992188);
+    int id = locations.intern(location);
+    CachingDrivingTimeMatrix matrix =
+        new CachingDrivingTimeMatrix(new StraightLineDrivingTimeMatrix(), locations, 10);
+    assertTrue(matrix.indexes(id, location));
+    assertFalse(matrix.indexes(id, otherLocation));
+    assertFalse(matrix.indexes(1, otherLocation));
+    assertFalse(matrix.indexes(-1, location));
+  }
+}
@@ -0,0 +1,73 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ilyazinkovich.dvta.dynamic.ConcurrentTripCatalog.Snapshot;
+import io.github.ilyazinkovich.dvta.dynamic.TripCatalogTest.Fixture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentTripCatalogTest {
+
+  @Test
+  public void concurrentAddsMatchSequentialCatalogInPublishOrder() throws Exception {
+    Fixture fixture = new Fixture(60, 13);
+    List<Request> requests = fixture.requests;
+    ConcurrentTripCatalog catalog = new ConcurrentTripCatalog(3, fixture.drivingTimeMatrix);
+    int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> ingests = new ArrayList<>();
+    try {
+      for (int t = 0; t < threads; t++) {
+        int offset = t;
+        ingests.add(executor.submit(() -> {
+          start.await();
+          for (int i = offset; i < requests.size(); i += threads) {
+            catalog.add(requests.get(i));
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> ingest : ingests) {
+        ingest.get(1, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Snapshot snapshot = catalog.snapshot();
+    assertEquals(requests.size(), snapshot.requests.size());
+    TripCatalog expected = new TripCatalog(3, fixture.drivingTimeMatrix);
+    snapshot.requests.forEach(expected::add);
+    assertEquals(expected.tripsPerRequestsCount(), snapshot.tripsPerRequestsCount);
+    long uniqueTrips = snapshot.tripsPerRequestsCount.values().stream().mapToLong(Set::size).sum();
+    assertEquals(uniqueTrips, snapshot.tripsCount);
+    assertTrue(snapshot.tripsPerRequestsCount.get(3).size() > 0);
+  }
+
+  @Test
+  public void snapshotStaysAtItsWatermark() {
+    Fixture fixture = new Fixture(10, 17);
+    List<Request> requests = fixture.requests;
+    ConcurrentTripCatalog catalog = new ConcurrentTripCatalog(2, fixture.drivingTimeMatrix);
+    requests.subList(0, 5).forEach(catalog::add);
+    Snapshot snapshot = catalog.snapshot();
+    requests.subList(5, 10).forEach(catalog::add);
+    assertFalse(catalog.add(requests.get(0)));
+    assertEquals(5, snapshot.watermark);
+    assertEquals(requests.subList(0, 5), snapshot.requests);
+    assertEquals(10, catalog.watermark());
+    snapshot.tripsPerRequestsCount.values().forEach(trips -> trips.forEach(
+        trip -> assertTrue(requests.subList(0, 5).containsAll(trip.requests))));
+  }
+}
@@ -0,0 +1,102 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContractionHierarchyTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void sameDrivingTimesAsAllPairsShortestPaths() {
+    Random random = new Random(12345);
+    int nodesCount = 60;
+    int edgesCount = 240;
+    double[] lat = new double[nodesCount];
+    double[] lng = new double[nodesCount];
+    int[] edgeFrom = new int[edgesCount];
+    int[] edgeTo = new int[edgesCount];
+    int[] edgeSeconds = new int[edgesCount];
+    for (int edge = 0; edge < edgesCount; edge++) {
+      edgeFrom[edge] = random.nextInt(nodesCount);
+      edgeTo[edge] = random.nextInt(nodesCount);
+      edgeSeconds[edge] = 1 + random.nextInt(600);
+    }
+    ContractionHierarchy hierarchy =
+        ContractionHierarchy.build(new RoadGraph(lat, lng, edgeFrom, edgeTo, edgeSeconds));
+    long[][] expected = allPairsShortestPaths(nodesCount, edgeFrom, edgeTo, edgeSeconds);
+    int[] destinations = new int[nodesCount];
+    Arrays.setAll(destinations, node -> node);
+    for (int origin = 0; origin < nodesCount; origin++) {
+      int[] oneToMany = hierarchy.drivingSeconds(origin, destinations);
+      for (int destination = 0; destination < nodesCount; destination++) {
+        long seconds = expected[origin][destination];
+        int expectedSeconds =
+            seconds == Long.MAX_VALUE ? ContractionHierarchy.UNREACHABLE : (int) seconds;
+        assertEquals(expectedSeconds, hierarchy.drivingSeconds(origin, destination));
+        assertEquals(expectedSeconds, oneToMany[destination]);
+      }
+    }
+  }
+
+  @Test
+  public void snapsLocationsToNearestNodes() throws IOException {
+    Path path = directory.resolve("graph.csv");
+    Files.write(path, List.of(
+        "# node id, lat, lng",
+        "v,10,40.700,-73.990",
+        "v,20,40.710,-73.990",
+        "v,30,40.710,-73.980",
+        "e,10,20,120",
+        "e,20,30,60",
+        "e,10,30,300",
+        "e,30,10,90"));
+    RoadNetworkDrivingTimeMatrix matrix = RoadNetworkDrivingTimeMatrix.load(path);
+    LatLng nearFirst = new LatLng(40.7001, -73.9899);
+    LatLng nearThird = new LatLng(40.7099, -73.9801);
+    assertEquals(Duration.ofSeconds(180), matrix.drivingTime(nearFirst, nearThird));
+    assertEquals(Duration.ofSeconds(90), matrix.drivingTime(nearThird, nearFirst));
+    assertArrayEquals(new int[]{0, 180},
+        matrix.drivingSeconds(nearFirst, List.of(nearFirst, nearThird)));
+    long[] seconds = new long[4];
+    matrix.drivingTimes(new LatLng[]{nearFirst, nearThird}, new LatLng[]{nearFirst, nearThird},
+        seconds);
+    assertArrayEquals(new long[]{0, 180, 90, 0}, seconds);
+  }
+
+  private static long[][] allPairsShortestPaths(
+      int nodesCount, int[] edgeFrom, int[] edgeTo, int[] edgeSeconds) {
+    long[][] seconds = new long[nodesCount][nodesCount];
+    for (long[] row : seconds) {
+      Arrays.fill(row, Long.MAX_VALUE);
+    }
+    for (int node = 0; node < nodesCount; node++) {
+      seconds[node][node] = 0;
+    }
+    for (int edge = 0; edge < edgeFrom.length; edge++) {
+      seconds[edgeFrom[edge]][edgeTo[edge]] =
+          Math.min(seconds[edgeFrom[edge]][edgeTo[edge]], edgeSeconds[edge]);
+    }
+    for (int via = 0; via < nodesCount; via++) {
+      for (int from = 0; from < nodesCount; from++) {
+        for (int to = 0; to < nodesCount; to++) {
+          if (seconds[from][via] != Long.MAX_VALUE && seconds[via][to] != Long.MAX_VALUE) {
+            seconds[from][to] = Math.min(seconds[from][to], seconds[from][via] + seconds[via][to]);
+          }
+        }
+      }
+    }
+    return seconds;
+  }
+}
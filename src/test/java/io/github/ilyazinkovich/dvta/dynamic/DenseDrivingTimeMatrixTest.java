@@ -0,0 +1,85 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class DenseDrivingTimeMatrixTest {
+
+  private static final DrivingTimeMatrix DRIVING_TIME_MATRIX =
+      new StraightLineDrivingTimeMatrix();
+
+  @Test
+  public void sameDrivingTimesAsSourceMatrix() {
+    LocationIndex locations = new LocationIndex();
+    LatLng pickUpLocation1 = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng dropOffLocation1 = new LatLng(40.701595306396484, -74.012008666992188);
+    LatLng pickUpLocation2 = new LatLng(40.737422943115234, -73.991249084472656);
+    Request request1 = request(pickUpLocation1, dropOffLocation1, locations);
+    Request request2 = request(pickUpLocation2, pickUpLocation1, locations);
+    DenseDrivingTimeMatrix matrix =
+        DenseDrivingTimeMatrix.create(List.of(request1, request2), DRIVING_TIME_MATRIX);
+    assertEquals(3, matrix.size());
+    List<LatLng> all = List.of(pickUpLocation1, dropOffLocation1, pickUpLocation2);
+    for (LatLng origin : all) {
+      for (LatLng destination : all) {
+        Duration expected = DRIVING_TIME_MATRIX.drivingTime(origin, destination);
+        assertEquals(expected, matrix.drivingTime(origin, destination));
+        assertEquals(expected.getSeconds(),
+            matrix.drivingSeconds(locations.id(origin), locations.id(destination)));
+      }
+    }
+  }
+
+  @Test
+  public void unknownLocationFallsBackToSourceMatrix() {
+    LocationIndex locations = new LocationIndex();
+    LatLng pickUpLocation = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng dropOffLocation = new LatLng(40.701595306396484, -74.012008666992188);
+    LatLng unknownLocation = new LatLng(40.737422943115234, -73.991249084472656);
+    DenseDrivingTimeMatrix matrix = DenseDrivingTimeMatrix.create(
+        List.of(request(pickUpLocation, dropOffLocation, locations)), DRIVING_TIME_MATRIX);
+    assertEquals(DRIVING_TIME_MATRIX.drivingTime(pickUpLocation, unknownLocation),
+        matrix.drivingTime(pickUpLocation, unknownLocation));
+  }
+
+  @Test
+  public void idsOutsideMatrixAreNotIndexed() {
+    LocationIndex locations = new LocationIndex();
+    LatLng pickUpLocation = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng dropOffLocation = new LatLng(40.701595306396484, -74.012008666992188);
+    LatLng otherLocation = new LatLng(40.737422943115234, -73.991249084472656);
+    Request request = request(pickUpLocation, dropOffLocation, locations);
+    DenseDrivingTimeMatrix matrix =
+        DenseDrivingTimeMatrix.create(List.of(request), DRIVING_TIME_MATRIX);
+    assertTrue(matrix.indexes(request.pickUpLocationId, pickUpLocation));
+    assertFalse(matrix.indexes(request.pickUpLocationId, otherLocation));
+    assertFalse(matrix.indexes(2, otherLocation));
+    assertFalse(matrix.indexes(-1, otherLocation));
+    assertThrows(IllegalArgumentException.class, () -> matrix.drivingSeconds(0, 2));
+    Request foreign = request(otherLocation, pickUpLocation, new LocationIndex());
+    assertFalse(matrix.indexes(foreign.pickUpLocationId, foreign.pickUpLocation));
+  }
+
+  @Test
+  public void rejectsMatrixLargerThanAnArray() {
+    LatLng location = new LatLng(40.699161529541016, -73.985969543457031);
+    Request request = new Request(UUID.randomUUID().toString(), location, 50_000, location,
+        50_000, null, null, null, null, null, null, null, null, null, null, null);
+    assertThrows(IllegalArgumentException.class,
+        () -> DenseDrivingTimeMatrix.create(List.of(request), DRIVING_TIME_MATRIX));
+  }
+
+  private static Request request(
+      LatLng pickUpLocation, LatLng dropOffLocation, LocationIndex locations) {
+    return new Request(UUID.randomUUID().toString(), pickUpLocation,
+        locations.intern(pickUpLocation), dropOffLocation, locations.intern(dropOffLocation),
+        null, null, null, null, null, null, null, null, null, null, null);
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.PICK_UP_AFTER_TIME_WINDOW_END;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class InsertionPointsTest {
+
+  @Test
+  public void enumeratesSamePositionsAsGenerateWithoutFailures() {
+    InsertionPoints points = new InsertionPoints(3, true);
+    List<int[]> expected = InsertionPoints.generate(0, 3);
+    List<int[]> actual = new ArrayList<>();
+    while (points.next()) {
+      actual.add(new int[]{points.pickUp(), points.dropOff()});
+    }
+    assertEquals(expected.size(), actual.size());
+    for (int k = 0; k < expected.size(); k++) {
+      assertArrayEquals(expected.get(k), actual.get(k));
+    }
+  }
+
+  @Test
+  public void stopBetweenPickUpAndDropOffSkipsToNextPickUp() {
+    InsertionPoints points = new InsertionPoints(3, false);
+    assertTrue(points.next());
+    assertTrue(points.next());
+    assertEquals(0, points.pickUp());
+    assertEquals(2, points.dropOff());
+    points.failed(1, PICK_UP_AFTER_TIME_WINDOW_END);
+    assertTrue(points.next());
+    assertEquals(1, points.pickUp());
+    assertEquals(2, points.dropOff());
+  }
+
+  @Test
+  public void lateDropOffSkipsLaterDropOffsOnlyWhenMonotone() {
+    InsertionPoints monotone = new InsertionPoints(3, true);
+    monotone.next();
+    monotone.failed(1, DROP_OFF_AFTER_TIME_WINDOW_END);
+    assertTrue(monotone.next());
+    assertEquals(1, monotone.pickUp());
+    InsertionPoints exhaustive = new InsertionPoints(3, false);
+    exhaustive.next();
+    exhaustive.failed(1, DROP_OFF_AFTER_TIME_WINDOW_END);
+    assertTrue(exhaustive.next());
+    assertEquals(0, exhaustive.pickUp());
+    assertEquals(2, exhaustive.dropOff());
+  }
+
+  @Test
+  public void latePickUpOrFailedPrefixEndsEnumeration() {
+    InsertionPoints latePickUp = new InsertionPoints(3, true);
+    latePickUp.next();
+    latePickUp.failed(0, PICK_UP_AFTER_TIME_WINDOW_END);
+    assertFalse(latePickUp.next());
+    InsertionPoints failedPrefix = new InsertionPoints(3, false);
+    while (failedPrefix.pickUp() < 2) {
+      failedPrefix.next();
+    }
+    failedPrefix.failed(1, DROP_OFF_AFTER_TIME_WINDOW_END);
+    assertFalse(failedPrefix.next());
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedDrivingTimeMatrixTest {
+
+  private static final DrivingTimeMatrix DRIVING_TIME_MATRIX =
+      new StraightLineDrivingTimeMatrix();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void sameDrivingTimesAsSourceMatrixWithIntCells() {
+    assertSameDrivingTimes(Integer.BYTES);
+  }
+
+  @Test
+  public void sameDrivingTimesAsSourceMatrixWithShortCells() {
+    assertSameDrivingTimes(Short.BYTES);
+  }
+
+  @Test
+  public void shortCellsSaturate() {
+    LocationIndex locations = new LocationIndex();
+    LatLng newYork = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng losAngeles = new LatLng(34.052235, -118.243683);
+    locations.intern(newYork);
+    locations.intern(losAngeles);
+    Path path = directory.resolve("matrix.bin");
+    DrivingTimeMatrixFile.write(path, locations, DRIVING_TIME_MATRIX, Short.BYTES);
+    MappedDrivingTimeMatrix matrix = MappedDrivingTimeMatrix.open(path);
+    assertEquals(Duration.ofSeconds(DrivingTimeMatrixFile.MAX_SHORT_SECONDS),
+        matrix.drivingTime(newYork, losAngeles));
+  }
+
+  @Test
+  public void idsOutsideMatrixAreNotIndexed() {
+    LocationIndex locations = new LocationIndex();
+    LatLng location = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng otherLocation = new LatLng(40.701595306396484, -74.012008666992188);
+    int id = locations.intern(location);
+    Path path = directory.resolve("matrix.bin");
+    DrivingTimeMatrixFile.write(path, locations, DRIVING_TIME_MATRIX, Integer.BYTES);
+    MappedDrivingTimeMatrix matrix = MappedDrivingTimeMatrix.open(path);
+    assertTrue(matrix.indexes(id, location));
+    assertFalse(matrix.indexes(id, otherLocation));
+    assertFalse(matrix.indexes(1, otherLocation));
+    assertFalse(matrix.indexes(-1, location));
+    assertThrows(IllegalArgumentException.class, () -> matrix.drivingSeconds(id, 1));
+    assertThrows(IllegalArgumentException.class, () -> matrix.drivingSeconds(-1, id));
+  }
+
+  private void assertSameDrivingTimes(int cellBytes) {
+    LocationIndex locations = new LocationIndex();
+    for (int i = 0; i < 10; i++) {
+      locations.intern(new LatLng(40.70 + i * 0.005, -73.99 + i * 0.003));
+    }
+    Path path = directory.resolve("matrix-" + cellBytes + ".bin");
+    DrivingTimeMatrixFile.write(path, locations, DRIVING_TIME_MATRIX, cellBytes);
+    MappedDrivingTimeMatrix matrix = MappedDrivingTimeMatrix.open(path);
+    assertEquals(locations.size(), matrix.size());
+    for (int origin = 0; origin < locations.size(); origin++) {
+      for (int destination = 0; destination < locations.size(); destination++) {
+        LatLng originLocation = matrix.locations().location(origin);
+        LatLng destinationLocation = matrix.locations().location(destination);
+        Duration expected = origin == destination ? Duration.ZERO
+            : DRIVING_TIME_MATRIX.drivingTime(originLocation, destinationLocation);
+        assertEquals(expected, matrix.drivingTime(originLocation, destinationLocation));
+        assertEquals(expected.getSeconds(), matrix.drivingSeconds(origin, destination));
+      }
+    }
+  }
+}
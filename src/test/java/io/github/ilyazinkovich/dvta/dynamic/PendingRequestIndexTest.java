@@ -0,0 +1,110 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ilyazinkovich.dvta.dynamic.Capacity.Unit;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PendingRequestIndexTest {
+
+  private final DrivingTimeMatrix drivingTimeMatrix = new StraightLineDrivingTimeMatrix();
+
+  @Test
+  public void indexedPairingFindsSamePairsAsFullScan() {
+    List<Request> requests = requests(300, new Random(42));
+    requests.sort(Comparator.comparing(request -> request.requestTime));
+    RR expected = new RR(new HashSet<>());
+    List<Request> processedRequests = new ArrayList<>();
+    RR actual = new RR(new HashSet<>());
+    PendingRequestIndex pendingRequests = pendingRequests();
+    long pending = 0;
+    long candidates = 0;
+    for (Request request : requests) {
+      processedRequests.removeIf(r -> !r.dispatchTimeout.isAfter(request.requestTime));
+      pendingRequests.expire(request.requestTime);
+      assertEquals(processedRequests.size(), pendingRequests.size());
+      expected.add(request, processedRequests, drivingTimeMatrix);
+      processedRequests.add(request);
+      pending += pendingRequests.size();
+      candidates += pendingRequests.candidates(request).size();
+      actual.add(request, pendingRequests, drivingTimeMatrix);
+      pendingRequests.insert(request);
+    }
+    assertFalse(expected.pairs.isEmpty());
+    assertEquals(expected.pairs, actual.pairs);
+    assertTrue(candidates < pending / 4);
+  }
+
+  @Test
+  public void candidatesStayCloseToPairsInTimeOrder() {
+    List<Request> requests = requests(300, new Random(42));
+    requests.sort(Comparator.comparing(request -> request.requestTime));
+    RR expected = new RR(new HashSet<>());
+    List<Request> processedRequests = new ArrayList<>();
+    RR actual = new RR(new HashSet<>());
+    PendingRequestIndex pendingRequests = pendingRequests();
+    long candidates = 0;
+    for (Request request : requests) {
+      expected.add(request, processedRequests, drivingTimeMatrix);
+      processedRequests.add(request);
+      candidates += pendingRequests.candidates(request).size();
+      actual.add(request, pendingRequests, drivingTimeMatrix);
+      pendingRequests.insert(request);
+    }
+    assertEquals(expected.pairs, actual.pairs);
+    assertTrue(candidates < 3 * expected.pairs.size() / 2);
+  }
+
+  @Test
+  public void removedRequestIsNoLongerCandidate() {
+    List<Request> requests = requests(20, new Random(7));
+    PendingRequestIndex pendingRequests = pendingRequests();
+    requests.forEach(pendingRequests::insert);
+    Request request = requests.get(0);
+    assertTrue(pendingRequests.remove(request));
+    assertFalse(pendingRequests.remove(request));
+    assertEquals(requests.size() - 1, pendingRequests.size());
+    for (Request other : requests) {
+      assertFalse(pendingRequests.candidates(other).contains(request));
+    }
+  }
+
+  private static PendingRequestIndex pendingRequests() {
+    return new PendingRequestIndex(new DrivingTimeLowerBound(25.0), Duration.ofMinutes(5), 1.0);
+  }
+
+  private static List<Request> requests(int count, Random random) {
+    List<Request> requests = new ArrayList<>();
+    Instant start = Instant.parse("2016-01-01T08:00:00Z");
+    for (int i = 0; i < count; i++) {
+      LatLng pickUpLocation =
+          new LatLng(40.6 + random.nextDouble() * 0.3, -74.1 + random.nextDouble() * 0.3);
+      LatLng dropOffLocation =
+          new LatLng(40.6 + random.nextDouble() * 0.3, -74.1 + random.nextDouble() * 0.3);
+      Instant requestTime = start.plusSeconds(random.nextInt(3 * 3600));
+      Instant pickUpTimeWindowStart = requestTime.plus(Duration.ofMinutes(random.nextInt(15)));
+      Instant pickUpTimeWindowEnd = pickUpTimeWindowStart.plus(Duration.ofMinutes(10));
+      Duration pickUpServiceTime = Duration.ofMinutes(random.nextInt(3) + 2L);
+      Duration dropOffServiceTime = Duration.ofMinutes(random.nextInt(3) + 2L);
+      Instant idealDropOffTime = pickUpTimeWindowStart
+          .plus(pickUpServiceTime)
+          .plus(Routing.drivingTime(pickUpLocation, dropOffLocation))
+          .plus(dropOffServiceTime);
+      requests.add(new Request(String.valueOf(i), pickUpLocation, null, dropOffLocation, null,
+          requestTime, requestTime.plus(Duration.ofMinutes(10)), pickUpTimeWindowStart,
+          random.nextBoolean() ? pickUpTimeWindowEnd : null, null, pickUpServiceTime,
+          idealDropOffTime, idealDropOffTime.plus(Duration.ofMinutes(14)), dropOffServiceTime,
+          idealDropOffTime.plus(Duration.ofMinutes(7)), List.of(new Capacity(1, Unit.SEAT))));
+    }
+    return requests;
+  }
+}
@@ -0,0 +1,186 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.ilyazinkovich.dvta.dynamic.Capacity.Unit;
+import io.github.ilyazinkovich.dvta.dynamic.PrimitiveRouteGenerator.Checkpoint;
+import io.github.ilyazinkovich.dvta.dynamic.PrimitiveRouteGenerator.StopState;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PrimitiveRouteGeneratorTest {
+
+  @Test
+  public void sameRoutesAsRouteGeneratorWithStraightLineMatrix() {
+    Random random = new Random(1);
+    LocationIndex locations = new LocationIndex();
+    List<Request> requests = requests(60, locations, random);
+    assertSameRoutes(requests, new StraightLineDrivingTimeMatrix(), null, random);
+  }
+
+  @Test
+  public void sameRoutesAsRouteGeneratorWithIndexedMatrixAndLowerBound() {
+    Random random = new Random(2);
+    LocationIndex locations = new LocationIndex();
+    List<Request> requests = requests(60, locations, random);
+    DrivingTimeMatrix drivingTimeMatrix =
+        DenseDrivingTimeMatrix.create(requests, new StraightLineDrivingTimeMatrix());
+    assertSameRoutes(requests, drivingTimeMatrix, new DrivingTimeLowerBound(30.0), random);
+  }
+
+  @Test
+  public void restoredCheckpointContinuesLikeFreshRoute() {
+    Random random = new Random(3);
+    LocationIndex locations = new LocationIndex();
+    List<Request> requests = requests(2, locations, random);
+    DrivingTimeMatrix drivingTimeMatrix = new StraightLineDrivingTimeMatrix();
+    RouteStop pickUp1 = new RouteStop(requests.get(0), PICK_UP);
+    RouteStop dropOff1 = new RouteStop(requests.get(0), DROP_OFF);
+    RouteStop pickUp2 = new RouteStop(requests.get(1), PICK_UP);
+    RouteStop dropOff2 = new RouteStop(requests.get(1), DROP_OFF);
+    Instant time = requests.get(0).pickUpTimeWindowStart;
+    PrimitiveRouteGenerator generator = new PrimitiveRouteGenerator(time, drivingTimeMatrix);
+    Checkpoint checkpoint = generator.add(pickUp1).checkpoint(new Checkpoint());
+    generator.add(dropOff1).add(pickUp2).add(dropOff2);
+    generator.restore(checkpoint).add(pickUp2).add(dropOff2).add(dropOff1);
+    RouteGenerator expected = new RouteGenerator(time, drivingTimeMatrix)
+        .add(pickUp1).add(pickUp2).add(dropOff2).add(dropOff1);
+    assertEquals(expected.stops(), generator.stops());
+    assertEquals(expected.time(), generator.time());
+    assertEquals(expected.failureReason(), generator.failureReason());
+    assertEquals(expected.dropOffDelays(), durations(
+        generator.dropOffDelaysCount(), generator::dropOffDelayNanos));
+  }
+
+  @Test
+  public void resumedStopStatesContinueLikeEvaluatedRoute() {
+    Random random = new Random(4);
+    LocationIndex locations = new LocationIndex();
+    List<Request> requests = requests(60, locations, random);
+    DrivingTimeMatrix drivingTimeMatrix = new StraightLineDrivingTimeMatrix();
+    double[] capacityLimits = Capacity.vector(List.of(new Capacity(2, Unit.SEAT)));
+    PrimitiveRouteGenerator evaluated =
+        new PrimitiveRouteGenerator(Instant.EPOCH, drivingTimeMatrix, null, capacityLimits);
+    PrimitiveRouteGenerator resumed =
+        new PrimitiveRouteGenerator(Instant.EPOCH, drivingTimeMatrix, null, capacityLimits);
+    for (int route = 0; route < 2000; route++) {
+      List<RouteStop> stops = new ArrayList<>();
+      for (int i = 0; i < 1 + random.nextInt(3); i++) {
+        Request request = requests.get(random.nextInt(requests.size()));
+        stops.add(new RouteStop(request, PICK_UP));
+        stops.add(new RouteStop(request, DROP_OFF));
+      }
+      Collections.shuffle(stops, random);
+      evaluated.reset(stops.get(0).request.pickUpTimeWindowStart);
+      List<StopState> states = new ArrayList<>();
+      for (RouteStop stop : stops) {
+        if (evaluated.add(stop).failed()) {
+          break;
+        }
+        states.add(evaluated.stopState(new StopState()));
+      }
+      if (states.isEmpty()) {
+        continue;
+      }
+      evaluated.reset(stops.get(0).request.pickUpTimeWindowStart);
+      stops.subList(0, states.size()).forEach(evaluated::add);
+      resumed.resume(states.toArray(StopState[]::new), states.size());
+      RouteStop next = new RouteStop(requests.get(random.nextInt(requests.size())), PICK_UP);
+      evaluated.add(next);
+      resumed.add(next);
+      assertEquals(evaluated.failureReason(), resumed.failureReason());
+      assertEquals(evaluated.time(), resumed.time());
+      assertEquals(evaluated.serviceTime(), resumed.serviceTime());
+      assertEquals(durations(evaluated.extraWaitCount(), evaluated::extraWaitNanos),
+          durations(resumed.extraWaitCount(), resumed::extraWaitNanos));
+      assertEquals(durations(evaluated.dropOffDelaysCount(), evaluated::dropOffDelayNanos),
+          durations(resumed.dropOffDelaysCount(), resumed::dropOffDelayNanos));
+      assertEquals(evaluated.stops(), resumed.stops());
+      assertEquals(evaluated.requests(), resumed.requests());
+    }
+  }
+
+  private static void assertSameRoutes(List<Request> requests,
+      DrivingTimeMatrix drivingTimeMatrix, DrivingTimeLowerBound drivingTimeLowerBound,
+      Random random) {
+    PrimitiveRouteGenerator primitive =
+        new PrimitiveRouteGenerator(Instant.EPOCH, drivingTimeMatrix, drivingTimeLowerBound);
+    for (int route = 0; route < 2000; route++) {
+      List<RouteStop> stops = new ArrayList<>();
+      for (int i = 0; i < 1 + random.nextInt(3); i++) {
+        Request request = requests.get(random.nextInt(requests.size()));
+        stops.add(new RouteStop(request, PICK_UP));
+        stops.add(new RouteStop(request, DROP_OFF));
+      }
+      Collections.shuffle(stops, random);
+      Instant time = stops.get(0).request.pickUpTimeWindowStart;
+      RouteGenerator expected =
+          new RouteGenerator(time, drivingTimeMatrix, drivingTimeLowerBound);
+      primitive.reset(time);
+      for (RouteStop stop : stops) {
+        expected.add(stop);
+        primitive.add(stop);
+        assertEquals(expected.failed(), primitive.failed());
+        assertEquals(expected.failureReason(), primitive.failureReason());
+        assertEquals(expected.time(), primitive.time());
+        assertEquals(expected.serviceTime(), primitive.serviceTime());
+        assertEquals(expected.extraWait(), durations(
+            primitive.extraWaitCount(), primitive::extraWaitNanos));
+        assertEquals(expected.dropOffDelays(), durations(
+            primitive.dropOffDelaysCount(), primitive::dropOffDelayNanos));
+        assertEquals(expected.stops(), primitive.stops());
+        assertEquals(expected.requests(), primitive.requests());
+      }
+    }
+  }
+
+  private static List<Duration> durations(int count, IndexedNanos nanos) {
+    List<Duration> durations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      durations.add(Duration.ofNanos(nanos.get(i)));
+    }
+    return durations;
+  }
+
+  private static List<Request> requests(int count, LocationIndex locations, Random random) {
+    List<LatLng> sharedLocations = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      sharedLocations.add(new LatLng(40.7 + random.nextDouble() * 0.05,
+          -74.0 + random.nextDouble() * 0.05));
+    }
+    Instant start = Instant.parse("2016-01-01T08:00:00.123456789Z");
+    List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      LatLng pickUpLocation = sharedLocations.get(random.nextInt(sharedLocations.size()));
+      LatLng dropOffLocation = sharedLocations.get(random.nextInt(sharedLocations.size()));
+      Instant pickUpTimeWindowStart = start.plusMillis(random.nextInt(1_800_000));
+      Duration pickUpServiceTime = Duration.ofSeconds(random.nextInt(300));
+      Duration dropOffServiceTime = Duration.ofSeconds(random.nextInt(300));
+      Instant idealDropOffTime = pickUpTimeWindowStart
+          .plus(pickUpServiceTime)
+          .plus(Routing.drivingTime(pickUpLocation, dropOffLocation))
+          .plus(dropOffServiceTime);
+      requests.add(new Request(String.valueOf(i), pickUpLocation,
+          locations.intern(pickUpLocation), dropOffLocation, locations.intern(dropOffLocation),
+          pickUpTimeWindowStart, null, pickUpTimeWindowStart,
+          random.nextBoolean() ? pickUpTimeWindowStart.plusSeconds(random.nextInt(900)) : null,
+          null, pickUpServiceTime, idealDropOffTime,
+          random.nextBoolean() ? idealDropOffTime.plusSeconds(random.nextInt(1800)) : null,
+          dropOffServiceTime, idealDropOffTime.plusSeconds(random.nextInt(900)),
+          List.of(new Capacity(1, Unit.SEAT))));
+    }
+    return requests;
+  }
+
+  private interface IndexedNanos {
+
+    long get(int index);
+  }
+}
@@ -0,0 +1,42 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.DROP_OFF;
+import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RequestTableTest {
+
+  @Test
+  public void handlesAreDenseAndReusedAfterRemoval() {
+    List<Request> requests = TripCatalogTest.requests(100, new LocationIndex(), new Random(3));
+    RequestTable requestTable = new RequestTable(4);
+    for (int i = 0; i < requests.size(); i++) {
+      assertEquals(i, requestTable.add(requests.get(i)));
+    }
+    assertEquals(7, requestTable.add(requests.get(7)));
+    assertTrue(requestTable.remove(requests.get(7)));
+    assertFalse(requestTable.remove(requests.get(7)));
+    assertEquals(-1, requestTable.handle(requests.get(7)));
+    assertEquals(7, requestTable.add(requests.get(7)));
+    assertEquals(0, requestTable.add(requests.get(0)));
+  }
+
+  @Test
+  public void stopsCarryTheirHandle() {
+    Request request = TripCatalogTest.requests(1, new LocationIndex(), new Random(3)).get(0);
+    RequestTable requestTable = new RequestTable();
+    int handle = requestTable.add(request);
+    assertEquals(new RouteStop(request, PICK_UP), requestTable.pickUp(handle));
+    assertEquals(new RouteStop(request, DROP_OFF), requestTable.dropOff(handle));
+    assertEquals(handle, requestTable.pickUp(handle).handle);
+    assertEquals(handle, requestTable.dropOff(handle).handle);
+    assertSame(requestTable.pickUp(handle), requestTable.pickUp(requestTable.add(request)));
+  }
+}
@@ -1,5 +1,6 @@
 package io.github.ilyazinkovich.dvta.dynamic;
 
+import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.CAPACITY_EXCEEDED;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.DROP_OFF_AFTER_TIME_WINDOW_END;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.NO_PICK_UP_FOR_DROP_OFF;
 import static io.github.ilyazinkovich.dvta.dynamic.RouteGenerator.FailureReason.PICK_UP_AFTER_TIME_WINDOW_END;
@@ -8,10 +9,14 @@ import static io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type.PICK_UP;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.github.ilyazinkovich.dvta.dynamic.Capacity.Unit;
 import io.github.ilyazinkovich.dvta.dynamic.RouteStop.Type;
 import java.time.Duration;
 import java.time.Instant;
@@ -768,4 +773,67 @@ class RouteGeneratorTest {
     assertEquals(dropOffServiceTime2, routeGenerator.serviceTime());
     assertEquals(List.of(Duration.ZERO, delay), routeGenerator.dropOffDelays());
   }
+
+  @Test
+  public void pickUpRejectedByLowerBoundWithoutDrivingTimeLookup() {
+    Instant time = Instant.now();
+    DrivingTimeMatrix drivingTimeMatrix = mock(DrivingTimeMatrix.class);
+    DrivingTimeLowerBound drivingTimeLowerBound = new DrivingTimeLowerBound(25.0);
+    RouteGenerator routeGenerator =
+        new RouteGenerator(time, drivingTimeMatrix, drivingTimeLowerBound);
+    LatLng pickUpLocation1 = new LatLng(40.699161529541016, -73.985969543457031);
+    LatLng pickUpLocation2 = new LatLng(40.801595306396484, -74.012008666992188);
+    Request request1 = new Request(UUID.randomUUID().toString(), pickUpLocation1, 1,
+        null, null, null, null, time, null, null, null, null, null, null, null, null);
+    Request request2 = new Request(UUID.randomUUID().toString(), pickUpLocation2, 2,
+        null, null, null, null, time, time.plus(Duration.ofMinutes(5)), null, null, null, null,
+        null, null, null);
+    routeGenerator.add(new RouteStop(request1, PICK_UP));
+    routeGenerator.add(new RouteStop(request2, PICK_UP));
+    assertTrue(routeGenerator.failed());
+    assertEquals(PICK_UP_AFTER_TIME_WINDOW_END, routeGenerator.failureReason());
+    verify(drivingTimeMatrix, never()).drivingTime(any(), any());
+    assertEquals(1, drivingTimeLowerBound.savedLookups());
+  }
+
+  @Test
+  public void pickUpExceedingCapacityFailsWithoutDrivingTimeLookup() {
+    Instant time = Instant.now();
+    DrivingTimeMatrix drivingTimeMatrix = mock(DrivingTimeMatrix.class);
+    when(drivingTimeMatrix.drivingTime(any(), any())).thenReturn(Duration.ZERO);
+    double[] capacityLimits = Capacity.vector(
+        List.of(new Capacity(3, Unit.SEAT), new Capacity(100, Unit.KG)));
+    RouteGenerator routeGenerator =
+        new RouteGenerator(time, drivingTimeMatrix, null, capacityLimits);
+    Request first = capacityRequest(time, new LatLng(0.0, 0.0),
+        List.of(new Capacity(2, Unit.SEAT), new Capacity(60, Unit.KG)));
+    Request second = capacityRequest(time, new LatLng(1.0, 1.0),
+        List.of(new Capacity(1, Unit.SEAT), new Capacity(50, Unit.KG)));
+    routeGenerator.add(new RouteStop(first, PICK_UP)).add(new RouteStop(second, PICK_UP));
+    assertTrue(routeGenerator.failed());
+    assertEquals(CAPACITY_EXCEEDED, routeGenerator.failureReason());
+    assertEquals(1, routeGenerator.failedStopIndex());
+    verify(drivingTimeMatrix, never()).drivingTime(any(), any());
+  }
+
+  @Test
+  public void dropOffReleasesCapacity() {
+    Instant time = Instant.now();
+    double[] capacityLimits = Capacity.vector(List.of(new Capacity(1, Unit.SEAT)));
+    RouteGenerator routeGenerator =
+        new RouteGenerator(time, EMPTY_DRIVING_TIME_MATRIX, null, capacityLimits);
+    Request first = capacityRequest(time, new LatLng(0.0, 0.0),
+        List.of(new Capacity(1, Unit.SEAT)));
+    Request second = capacityRequest(time, new LatLng(1.0, 1.0),
+        List.of(new Capacity(1, Unit.SEAT)));
+    routeGenerator.add(new RouteStop(first, PICK_UP)).add(new RouteStop(first, DROP_OFF))
+        .add(new RouteStop(second, PICK_UP)).add(new RouteStop(second, DROP_OFF));
+    assertFalse(routeGenerator.failed());
+  }
+
+  private static Request capacityRequest(
+      Instant time, LatLng location, List<Capacity> requiredCapacities) {
+    return new Request(UUID.randomUUID().toString(), location, null, location, null, null, null,
+        time, null, null, Duration.ZERO, time, null, Duration.ZERO, null, requiredCapacities);
+  }
 }
@@ -0,0 +1,194 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RoutingServiceDrivingTimeMatrixTest {
+
+  private final DrivingTimeMatrix straightLine = new StraightLineDrivingTimeMatrix();
+  private final AtomicInteger tableCalls = new AtomicInteger();
+  private HttpServer server;
+  private URI baseUri;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/table/v1/driving/", this::table);
+    server.start();
+    baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void concurrentLegsAreBatchedIntoOneTableCall() {
+    List<LatLng> locations = locations(5);
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofMillis(200), 100, 1000)) {
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (LatLng origin : locations) {
+        for (LatLng destination : locations) {
+          futures.add(matrix.drivingSecondsAsync(origin, destination));
+        }
+      }
+      int i = 0;
+      for (LatLng origin : locations) {
+        for (LatLng destination : locations) {
+          assertEquals(straightLine.drivingTime(origin, destination).getSeconds(),
+              (long) futures.get(i++).join());
+        }
+      }
+      assertEquals(1, matrix.tableRequests());
+      assertEquals(1, tableCalls.get());
+    }
+  }
+
+  @Test
+  public void identicalLegsAreCoalescedAndCached() {
+    List<LatLng> locations = locations(2);
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofMillis(50), 100, 1000)) {
+      CompletableFuture<Integer> first =
+          matrix.drivingSecondsAsync(locations.get(0), locations.get(1));
+      CompletableFuture<Integer> second =
+          matrix.drivingSecondsAsync(locations.get(0), locations.get(1));
+      assertEquals(first.join(), second.join());
+      assertEquals(straightLine.drivingTime(locations.get(0), locations.get(1)),
+          matrix.drivingTime(locations.get(0), locations.get(1)));
+      assertEquals(1, tableCalls.get());
+    }
+  }
+
+  @Test
+  public void fullBatchIsSentBeforeWindowEnds() {
+    List<LatLng> locations = locations(4);
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofHours(1), 4, 1000)) {
+      LatLng[] origins = locations.toArray(new LatLng[0]);
+      LatLng[] destinations = locations.toArray(new LatLng[0]);
+      long[] seconds = new long[16];
+      matrix.drivingTimes(origins, destinations, seconds);
+      long[] expected = new long[16];
+      straightLine.drivingTimes(origins, destinations, expected);
+      for (int i = 0; i < 16; i++) {
+        assertEquals(expected[i], seconds[i]);
+      }
+      assertEquals(4, matrix.tableRequests());
+    }
+  }
+
+  @Test
+  public void serviceErrorFailsLookup() {
+    server.removeContext("/table/v1/driving/");
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofMillis(10), 100, 1000)) {
+      List<LatLng> locations = locations(2);
+      assertThrows(RuntimeException.class,
+          () -> matrix.drivingTime(locations.get(0), locations.get(1)));
+    }
+  }
+
+  @Test
+  public void shortResponseFailsEveryLeg() {
+    server.removeContext("/table/v1/driving/");
+    server.createContext("/table/v1/driving/",
+        exchange -> respond(exchange, "{\"code\":\"Ok\",\"durations\":[[0]]}"));
+    List<LatLng> locations = locations(3);
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofHours(1), 9, 1000)) {
+      LatLng[] all = locations.toArray(new LatLng[0]);
+      assertThrows(RuntimeException.class,
+          () -> matrix.drivingTimes(all, all, new long[9]));
+    }
+  }
+
+  @Test
+  public void unansweredCallTimesOut() {
+    server.removeContext("/table/v1/driving/");
+    server.createContext("/table/v1/driving/", exchange -> {
+      try {
+        Thread.sleep(5000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    List<LatLng> locations = locations(2);
+    try (RoutingServiceDrivingTimeMatrix matrix = new RoutingServiceDrivingTimeMatrix(
+        baseUri, Duration.ofMillis(10), 100, 1000, Duration.ofMillis(200))) {
+      assertTimeoutPreemptively(Duration.ofSeconds(3), () -> assertThrows(
+          RuntimeException.class, () -> matrix.drivingTime(locations.get(0), locations.get(1))));
+    }
+  }
+
+  private void table(HttpExchange exchange) throws IOException {
+    tableCalls.incrementAndGet();
+    URI uri = exchange.getRequestURI();
+    String path = uri.getPath();
+    String[] coordinates = path.substring(path.lastIndexOf('/') + 1).split(";");
+    List<LatLng> locations = new ArrayList<>();
+    for (String coordinate : coordinates) {
+      String[] lngLat = coordinate.split(",");
+      locations.add(new LatLng(Double.parseDouble(lngLat[1]), Double.parseDouble(lngLat[0])));
+    }
+    String[] sources = parameter(uri, "sources").split(";");
+    String[] destinations = parameter(uri, "destinations").split(";");
+    StringBuilder body = new StringBuilder("{\"code\":\"Ok\",\"durations\":[");
+    for (int i = 0; i < sources.length; i++) {
+      body.append(i == 0 ? "[" : ",[");
+      for (int j = 0; j < destinations.length; j++) {
+        Duration drivingTime = straightLine.drivingTime(
+            locations.get(Integer.parseInt(sources[i])),
+            locations.get(Integer.parseInt(destinations[j])));
+        body.append(j == 0 ? "" : ",").append(drivingTime.getSeconds()).append(".0");
+      }
+      body.append(']');
+    }
+    body.append("]}");
+    respond(exchange, body.toString());
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  private static String parameter(URI uri, String name) {
+    for (String parameter : uri.getQuery().split("&")) {
+      if (parameter.startsWith(name + "=")) {
+        return parameter.substring(name.length() + 1);
+      }
+    }
+    throw new IllegalArgumentException("Missing parameter " + name);
+  }
+
+  private static List<LatLng> locations(int count) {
+    List<LatLng> locations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      locations.add(new LatLng(40.7 + i * 0.01, -73.98 - i * 0.01));
+    }
+    return locations;
+  }
+}
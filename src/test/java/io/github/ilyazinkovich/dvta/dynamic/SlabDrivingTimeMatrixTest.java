@@ -0,0 +1,52 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class SlabDrivingTimeMatrixTest {
+
+  private static final LatLng PICK_UP_LOCATION =
+      new LatLng(40.699161529541016, -73.985969543457031);
+  private static final LatLng DROP_OFF_LOCATION =
+      new LatLng(40.701595306396484, -74.012008666992188);
+
+  @Test
+  public void interpolatesBetweenSlabs() {
+    SlabDrivingTimeMatrix matrix = SlabDrivingTimeMatrix.create(List.of(request()), List.of(
+        (origin, destination) -> Duration.ofMinutes(10),
+        (origin, destination) -> Duration.ofMinutes(20)));
+    Instant midnight = Instant.parse("2016-01-01T00:00:00Z");
+    assertEquals(Duration.ofMinutes(15),
+        matrix.drivingTime(PICK_UP_LOCATION, DROP_OFF_LOCATION, midnight));
+    assertEquals(Duration.ofMinutes(10), matrix.drivingTime(
+        PICK_UP_LOCATION, DROP_OFF_LOCATION, midnight.plus(Duration.ofHours(6))));
+    assertEquals(Duration.ofMinutes(15), matrix.drivingTime(
+        PICK_UP_LOCATION, DROP_OFF_LOCATION, midnight.plus(Duration.ofHours(12))));
+    assertEquals(Duration.ofMinutes(20), matrix.drivingTime(
+        PICK_UP_LOCATION, DROP_OFF_LOCATION, midnight.plus(Duration.ofHours(18))));
+    assertEquals(Duration.ofMinutes(10), matrix.drivingTime(PICK_UP_LOCATION, DROP_OFF_LOCATION));
+  }
+
+  @Test
+  public void routeGeneratorPassesDepartureTime() {
+    SlabDrivingTimeMatrix matrix = SlabDrivingTimeMatrix.create(List.of(request()), List.of(
+        (origin, destination) -> Duration.ofMinutes(10),
+        (origin, destination) -> Duration.ofMinutes(20)));
+    Request request = request();
+    Instant noon = Instant.parse("2016-01-01T12:00:00Z");
+    RouteGenerator routeGenerator = new RouteGenerator(noon, matrix)
+        .add(new RouteStop(request, RouteStop.Type.PICK_UP))
+        .add(new RouteStop(request, RouteStop.Type.DROP_OFF));
+    assertEquals(noon.plus(Duration.ofMinutes(15)), routeGenerator.time());
+  }
+
+  private static Request request() {
+    return new Request(UUID.randomUUID().toString(), PICK_UP_LOCATION, 0, DROP_OFF_LOCATION, 1,
+        null, null, Instant.EPOCH, null, null, null, Instant.EPOCH, null, null, null, null);
+  }
+}
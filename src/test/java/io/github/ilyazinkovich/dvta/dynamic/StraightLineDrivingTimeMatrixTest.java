@@ -0,0 +1,33 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StraightLineDrivingTimeMatrixTest {
+
+  @Test
+  public void batchDrivingTimesMatchSingleDrivingTimes() {
+    Random random = new Random(12345);
+    LatLng[] origins = locations(random, 7);
+    LatLng[] destinations = locations(random, 11);
+    DrivingTimeMatrix matrix = new StraightLineDrivingTimeMatrix();
+    long[] seconds = new long[origins.length * destinations.length];
+    matrix.drivingTimes(origins, destinations, seconds);
+    for (int i = 0; i < origins.length; i++) {
+      for (int j = 0; j < destinations.length; j++) {
+        assertEquals(matrix.drivingTime(origins[i], destinations[j]).getSeconds(),
+            seconds[i * destinations.length + j]);
+      }
+    }
+  }
+
+  private static LatLng[] locations(Random random, int count) {
+    LatLng[] locations = new LatLng[count];
+    for (int i = 0; i < count; i++) {
+      locations[i] = new LatLng(40.6 + random.nextDouble() * 0.2, -74.0 + random.nextDouble() * 0.2);
+    }
+    return locations;
+  }
+}
@@ -0,0 +1,61 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import io.github.ilyazinkovich.dvta.dynamic.TripCatalogTest.Fixture;
+import org.junit.jupiter.api.Test;
+
+class TrieTripCatalogTest {
+
+  @Test
+  public void keepsTripCatalogTripsInSharedNodes() {
+    Fixture fixture = new Fixture(40, 47);
+    TrieTripCatalog trie =
+        fixture.catalog(matrix -> new TrieTripCatalog(3, matrix), TrieTripCatalog::add);
+    TripCatalog catalog = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    long stopsCount = 0;
+    for (int size = 1; size <= 3; size++) {
+      Set<Trip> trips = trie.tripsPerRequestsCount().get(size);
+      assertTrue(trips.containsAll(catalog.tripsPerRequestsCount().get(size)));
+      for (Trip trip : trips) {
+        assertEquals(size, trip.requests.size());
+        RouteGenerator generator = new RouteGenerator(
+            trip.route.getFirst().request.pickUpTimeWindowStart, fixture.drivingTimeMatrix);
+        trip.route.forEach(generator::add);
+        assertFalse(generator.failed());
+        stopsCount += trip.route.size();
+      }
+    }
+    assertTrue(catalog.tripsPerRequestsCount().get(3).size() > 0);
+    assertTrue(trie.nodesCount() < stopsCount / 2);
+  }
+
+  @Test
+  public void removedRequestsLeaveSameTrieAsNeverAdded() {
+    Fixture fixture = new Fixture(40, 53);
+    List<Request> requests = fixture.requests;
+    TrieTripCatalog trie = new TrieTripCatalog(3, fixture.drivingTimeMatrix);
+    TrieTripCatalog expected = new TrieTripCatalog(3, fixture.drivingTimeMatrix);
+    for (int i = 0; i < requests.size(); i++) {
+      trie.add(requests.get(i));
+      if (i % 3 == 0) {
+        assertTrue(trie.remove(requests.get(i)));
+      } else {
+        expected.add(requests.get(i));
+      }
+    }
+    assertFalse(trie.remove(requests.get(0)));
+    assertEquals(expected.tripsPerRequestsCount(), trie.tripsPerRequestsCount());
+    assertEquals(expected.nodesCount(), trie.nodesCount());
+    assertTrue(trie.trips(requests.get(0)).isEmpty());
+    for (Request request : trie.requests()) {
+      for (Trip trip : trie.trips(request)) {
+        assertTrue(trip.requests.contains(request));
+      }
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package io.github.ilyazinkovich.dvta.dynamic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.ilyazinkovich.dvta.dynamic.Capacity.Unit;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class TripCatalogTest {
+
+  @Test
+  public void scheduleFilterKeepsSameTrips() {
+    Fixture fixture = new Fixture(40, 5);
+    TripCatalog withSchedules = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    TripCatalog withoutSchedules = fixture.catalog(
+        matrix -> new TripCatalog(3, new SlabDrivingTimeMatrix(List.of(matrix))));
+    assertEquals(withoutSchedules.tripsPerRequestsCount(), withSchedules.tripsPerRequestsCount());
+    assertTrue(withSchedules.tripsPerRequestsCount().get(2).size() > 0);
+    withSchedules.tripsPerRequestsCount().get(1)
+        .forEach(trip -> assertNotNull(trip.schedule));
+  }
+
+  @Test
+  public void capacityLimitsDropOnlyOverloadedTrips() {
+    Fixture fixture = new Fixture(40, 9);
+    double[] capacityLimits = Capacity.vector(List.of(new Capacity(2, Unit.SEAT)));
+    TripCatalog limited =
+        fixture.catalog(matrix -> new TripCatalog(3, matrix, null, capacityLimits));
+    TripCatalog unlimited = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    Set<Trip> expected = new HashSet<>();
+    unlimited.tripsPerRequestsCount().values().forEach(trips -> trips.stream()
+        .filter(trip -> maxSeats(trip) <= 2)
+        .forEach(expected::add));
+    Set<Trip> actual = new HashSet<>();
+    limited.tripsPerRequestsCount().values().forEach(actual::addAll);
+    assertEquals(expected, actual);
+    assertTrue(unlimited.tripsPerRequestsCount().get(3).stream()
+        .anyMatch(trip -> maxSeats(trip) > 2));
+  }
+
+  @Test
+  public void parallelModeKeepsSameTrips() {
+    Fixture fixture = new Fixture(40, 11);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      TripCatalog sequential = fixture.catalog(matrix -> new TripCatalog(4, matrix));
+      TripCatalog parallel =
+          fixture.catalog(matrix -> new TripCatalog(4, matrix, null, null, pool));
+      assertEquals(sequential.tripsPerRequestsCount(), parallel.tripsPerRequestsCount());
+      assertTrue(parallel.tripsPerRequestsCount().get(3).size() > 0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void removedRequestsLeaveSameCatalogAsNeverAdded() {
+    Fixture fixture = new Fixture(40, 19);
+    List<Request> requests = fixture.requests;
+    TripCatalog catalog = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    TripCatalog expected = new TripCatalog(3, fixture.drivingTimeMatrix);
+    for (int i = 0; i < requests.size(); i++) {
+      if (i % 3 == 0) {
+        assertTrue(catalog.remove(requests.get(i)));
+      } else {
+        expected.add(requests.get(i));
+      }
+    }
+    assertFalse(catalog.remove(requests.get(0)));
+    assertEquals(expected.tripsPerRequestsCount(), catalog.tripsPerRequestsCount());
+    assertEquals(expected.requests(), catalog.requests());
+    assertTrue(catalog.trips(requests.get(0)).isEmpty());
+    for (Request request : catalog.requests()) {
+      Set<Trip> containing = new HashSet<>();
+      catalog.tripsPerRequestsCount().values().forEach(trips -> trips.stream()
+          .filter(trip -> trip.requests.contains(request))
+          .forEach(containing::add));
+      assertEquals(containing, catalog.trips(request));
+    }
+  }
+
+  @Test
+  public void expireRemovesRequestsPastDispatchTimeout() {
+    Fixture fixture = new Fixture(30, 23);
+    TripCatalog catalog = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    Instant now = Instant.parse("2016-01-01T08:25:00Z");
+    List<Request> expired = catalog.expire(now);
+    assertFalse(expired.isEmpty());
+    for (Request request : fixture.requests) {
+      assertEquals(!request.dispatchTimeout.isAfter(now), expired.contains(request));
+      assertEquals(request.dispatchTimeout.isAfter(now), catalog.requests().contains(request));
+    }
+    catalog.tripsPerRequestsCount().values().forEach(trips -> trips.forEach(
+        trip -> assertTrue(catalog.requests().containsAll(trip.requests))));
+    assertTrue(catalog.expire(now).isEmpty());
+  }
+
+  @Test
+  public void paretoPruningKeepsOnlyNonDominatedRoutes() {
+    Fixture fixture = new Fixture(40, 29);
+    TripCatalog pruned =
+        fixture.catalog(matrix -> new TripCatalog(3, matrix, null, null, null, true, null));
+    TripCatalog full = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    for (int size = 1; size <= 3; size++) {
+      Set<Trip> trips = pruned.tripsPerRequestsCount().get(size);
+      assertTrue(trips.size() <= full.tripsPerRequestsCount().get(size).size());
+      for (Trip trip : trips) {
+        for (Trip other : trips) {
+          assertTrue(other.equals(trip) || !other.requests.equals(trip.requests)
+              || !other.summary.dominates(trip.summary));
+        }
+      }
+    }
+    assertTrue(pruned.tripsPerRequestsCount().get(2).size()
+        < full.tripsPerRequestsCount().get(2).size());
+    assertEquals(full.tripsPerRequestsCount().get(2).stream().map(trip -> trip.requests)
+            .collect(Collectors.toSet()),
+        pruned.tripsPerRequestsCount().get(2).stream().map(trip -> trip.requests)
+            .collect(Collectors.toSet()));
+  }
+
+  @Test
+  public void retentionKeepsCheapestTripsOfEachSize() {
+    Fixture fixture = new Fixture(40, 31);
+    int maxTripsPerSize = 50;
+    TripCatalog retained = fixture.catalog(matrix -> new TripCatalog(3, matrix, null, null,
+        null, false, new TripRetention(TripCost.DELAY_AND_WAIT, maxTripsPerSize)));
+    TripCatalog full = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    assertEquals(full.tripsPerRequestsCount().get(1), retained.tripsPerRequestsCount().get(1));
+    assertTrue(full.tripsPerRequestsCount().get(2).size() > maxTripsPerSize);
+    for (int size = 2; size <= 3; size++) {
+      Set<Trip> trips = retained.tripsPerRequestsCount().get(size);
+      assertEquals(maxTripsPerSize, trips.size());
+      trips.forEach(trip -> trip.requests.forEach(
+          request -> assertTrue(retained.trips(request).contains(trip))));
+    }
+    List<Double> fullCosts = full.tripsPerRequestsCount().get(2).stream()
+        .map(TripCost.DELAY_AND_WAIT::cost).sorted().collect(Collectors.toList());
+    double maxRetainedCost = retained.tripsPerRequestsCount().get(2).stream()
+        .mapToDouble(TripCost.DELAY_AND_WAIT::cost).max().orElseThrow();
+    assertTrue(maxRetainedCost <= fullCosts.get(maxTripsPerSize - 1));
+  }
+
+  @Test
+  public void compatibilityFilterKeepsSameTrips() {
+    Fixture fixture = new Fixture(40, 43);
+    List<Request> requests = fixture.requests;
+    DrivingTimeMatrix drivingTimeMatrix = fixture.drivingTimeMatrix;
+    RR rr = new RR(new HashSet<>());
+    TripCatalog filtered =
+        new TripCatalog(3, drivingTimeMatrix, null, null, null, false, null, rr);
+    TripCatalog full = new TripCatalog(3, drivingTimeMatrix);
+    List<Request> processed = new ArrayList<>();
+    for (int i = 0; i < requests.size(); i++) {
+      Request request = requests.get(i);
+      rr.add(request, processed, drivingTimeMatrix);
+      processed.add(request);
+      filtered.add(request);
+      full.add(request);
+      if (i % 4 == 3) {
+        filtered.remove(requests.get(i - 2));
+        full.remove(requests.get(i - 2));
+      }
+    }
+    assertEquals(full.tripsPerRequestsCount(), filtered.tripsPerRequestsCount());
+    assertTrue(filtered.tripsPerRequestsCount().get(3).size() > 0);
+  }
+
+  @Test
+  public void pairsOfOtherSizesAreRejected() {
+    List<Request> requests = new Fixture(3, 43).requests;
+    assertThrows(IllegalArgumentException.class,
+        () -> new RR(Set.of(Set.of(requests.get(0)))));
+    assertThrows(IllegalArgumentException.class,
+        () -> new RR(Set.of(Set.copyOf(requests))));
+  }
+
+  @Test
+  public void pruningKeepsEveryTripWithoutServiceTimes() {
+    Fixture fixture = new Fixture(requests(40, new LocationIndex(), new Random(4), false));
+    TripCatalog catalog = fixture.catalog(matrix -> new TripCatalog(3, matrix));
+    assertEquals(exhaustiveTrips(fixture.requests, 3, fixture.drivingTimeMatrix),
+        catalog.tripsPerRequestsCount());
+    assertTrue(catalog.tripsPerRequestsCount().get(3).size() > 0);
+  }
+
+  /**
+   * Trips of the requests found by evaluating every insertion of every request into every trip
+   * from scratch.
+   */
+  private static Map<Integer, Set<Trip>> exhaustiveTrips(
+      List<Request> requests, int maxTripRequests, DrivingTimeMatrix drivingTimeMatrix) {
+    Map<Integer, Set<Trip>> trips = new HashMap<>();
+    for (int i = 1; i <= maxTripRequests; i++) {
+      trips.put(i, new HashSet<>());
+    }
+    for (Request request : requests) {
+      RouteStop pickUp = new RouteStop(request, RouteStop.Type.PICK_UP);
+      RouteStop dropOff = new RouteStop(request, RouteStop.Type.DROP_OFF);
+      RouteGenerator single = new RouteGenerator(request.pickUpTimeWindowStart, drivingTimeMatrix)
+          .add(pickUp).add(dropOff);
+      if (single.failed()) {
+        continue;
+      }
+      trips.get(1).add(new Trip(Set.of(request), single.stops()));
+      for (int i = 1; i < maxTripRequests; i++) {
+        List<Trip> extended = new ArrayList<>();
+        for (Trip trip : trips.get(i)) {
+          if (trip.requests.contains(request)) {
+            continue;
+          }
+          List<RouteStop> route = new ArrayList<>(trip.route);
+          for (int[] points : InsertionPoints.generate(0, route.size())) {
+            RouteGenerator generator = new RouteGenerator(
+                route.get(0).request.pickUpTimeWindowStart, drivingTimeMatrix);
+            List<RouteStop> stops = new ArrayList<>(route);
+            stops.add(points[0], pickUp);
+            stops.add(points[1], dropOff);
+            for (int k = 0; k < stops.size() && !generator.failed(); k++) {
+              generator.add(stops.get(k));
+            }
+            if (!generator.failed()) {
+              extended.add(new Trip(generator.requests(), generator.stops()));
+            }
+          }
+        }
+        trips.get(i + 1).addAll(extended);
+      }
+    }
+    return trips;
+  }
+
+  private static double maxSeats(Trip trip) {
+    double seats = 0;
+    double maxSeats = 0;
+    for (RouteStop stop : trip.route) {
+      double quantity = stop.request.requiredCapacities.get(0).quantity;
+      seats += stop.type == RouteStop.Type.PICK_UP ? quantity : -quantity;
+      maxSeats = Math.max(maxSeats, seats);
+    }
+    return maxSeats;
+  }
+
+  /**
+   * Requests with a dense straight-line matrix over their locations.
+   */
+  static final class Fixture {
+
+    final List<Request> requests;
+    final DenseDrivingTimeMatrix drivingTimeMatrix;
+
+    Fixture(int count, long seed) {
+      this(requests(count, new LocationIndex(), new Random(seed)));
+    }
+
+    Fixture(List<Request> requests) {
+      this.requests = requests;
+      this.drivingTimeMatrix =
+          DenseDrivingTimeMatrix.create(requests, new StraightLineDrivingTimeMatrix());
+    }
+
+    TripCatalog catalog(Function<DenseDrivingTimeMatrix, TripCatalog> factory) {
+      return catalog(factory, TripCatalog::add);
+    }
+
+    /**
+     * @return catalog over the matrix with every request added in order
+     */
+    <T> T catalog(Function<DenseDrivingTimeMatrix, T> factory, BiConsumer<T, Request> add) {
+      T catalog = factory.apply(drivingTimeMatrix);
+      requests.forEach(request -> add.accept(catalog, request));
+      return catalog;
+    }
+  }
+
+  static List<Request> requests(int count, LocationIndex locations, Random random) {
+    return requests(count, locations, random, true);
+  }
+
+  static List<Request> requests(
+      int count, LocationIndex locations, Random random, boolean serviceTimes) {
+    Instant start = Instant.parse("2016-01-01T08:00:00Z");
+    List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      LatLng pickUpLocation =
+          new LatLng(40.7 + random.nextDouble() * 0.05, -74.0 + random.nextDouble() * 0.05);
+      LatLng dropOffLocation =
+          new LatLng(40.7 + random.nextDouble() * 0.05, -74.0 + random.nextDouble() * 0.05);
+      Instant requestTime = start.plusSeconds(random.nextInt(1800));
+      Instant pickUpTimeWindowStart = requestTime.plus(Duration.ofMinutes(random.nextInt(15)));
+      Duration pickUpServiceTime = Duration.ofMinutes(random.nextInt(3) + 2L);
+      Duration dropOffServiceTime = Duration.ofMinutes(random.nextInt(3) + 2L);
+      if (!serviceTimes) {
+        pickUpServiceTime = Duration.ZERO;
+        dropOffServiceTime = Duration.ZERO;
+      }
+      Instant idealDropOffTime = pickUpTimeWindowStart
+          .plus(pickUpServiceTime)
+          .plus(Routing.drivingTime(pickUpLocation, dropOffLocation))
+          .plus(dropOffServiceTime);
+      requests.add(new Request(String.valueOf(i), pickUpLocation,
+          locations.intern(pickUpLocation), dropOffLocation, locations.intern(dropOffLocation),
+          requestTime, requestTime.plus(Duration.ofMinutes(10)), pickUpTimeWindowStart,
+          pickUpTimeWindowStart.plus(Duration.ofMinutes(10)), null, pickUpServiceTime,
+          idealDropOffTime, idealDropOffTime.plus(Duration.ofMinutes(14)), dropOffServiceTime,
+          idealDropOffTime.plus(Duration.ofMinutes(7)), List.of(new Capacity(1, Unit.SEAT))));
+    }
+    return requests;
+  }
+}
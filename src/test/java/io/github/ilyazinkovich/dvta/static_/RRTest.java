@@ -0,0 +1,45 @@
+package io.github.ilyazinkovich.dvta.static_;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class RRTest {
+
+  @Test
+  public void parallelSweepBuildsSameRRAsExhaustiveMatching() {
+    List<Request> requests = requests(300, new Random(7));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      RR exhaustive = RR.create(requests);
+      RR swept = RR.create(requests, pool);
+      assertFalse(exhaustive.requestToRequestCost.isEmpty());
+      assertEquals(exhaustive.requestToRequestCost, swept.requestToRequestCost);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<Request> requests(int count, Random random) {
+    Instant start = Instant.parse("2016-01-01T08:00:00Z");
+    List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      LatLng origin =
+          new LatLng(40.7 + random.nextDouble() * 0.05, -74.0 + random.nextDouble() * 0.05);
+      LatLng destination =
+          new LatLng(40.7 + random.nextDouble() * 0.05, -74.0 + random.nextDouble() * 0.05);
+      Instant requestTime = start.plusSeconds(random.nextInt(3600));
+      requests.add(new Request(String.valueOf(i), origin, destination, requestTime,
+          requestTime.plus(Duration.ofMinutes(5)),
+          requestTime.plus(Routing.drivingTime(origin, destination)), Duration.ofMinutes(10)));
+    }
+    return requests;
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.ilyazinkovich.dvta.static_;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class RVTest {
+
+  private static final Instant START = Instant.parse("2016-01-01T08:00:00Z");
+
+  @Test
+  public void gridBuildsSameRVAsExhaustiveMatching() {
+    Random random = new Random(9);
+    List<Request> requests = requests(200, random);
+    List<Vehicle> vehicles = vehicles(60, random);
+    Map<Vehicle, Map<Request, Double>> expected = new HashMap<>();
+    for (Request request : requests) {
+      for (Vehicle vehicle : vehicles) {
+        Double cost = TSP.travel(vehicle, Set.of(request));
+        if (cost != null) {
+          expected.computeIfAbsent(vehicle, v -> new HashMap<>()).put(request, cost);
+        }
+      }
+    }
+    assertFalse(expected.isEmpty());
+    assertTrue(expected.keySet().stream().anyMatch(vehicle -> !vehicle.passengers.isEmpty()));
+    assertEquals(expected, RV.create(requests, vehicles).vehicleToRequestCost);
+  }
+
+  private static List<Request> requests(int count, Random random) {
+    List<Request> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      requests.add(request("r" + i, START.plusSeconds(random.nextInt(1800)), random));
+    }
+    return requests;
+  }
+
+  /**
+   * Vehicles spread over the area and the hour, every other one carrying up to two passengers
+   * that were picked up before the vehicle's current time.
+   */
+  private static List<Vehicle> vehicles(int count, Random random) {
+    List<Vehicle> vehicles = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Instant currentTime = START.plusSeconds(random.nextInt(1800));
+      Set<Request> passengers = new HashSet<>();
+      if (i % 2 == 1) {
+        int passengersCount = 1 + random.nextInt(2);
+        for (int p = 0; p < passengersCount; p++) {
+          Instant requestTime = currentTime.minusSeconds(60 + random.nextInt(300));
+          passengers.add(new Request(request("v" + i + "p" + p, requestTime, random),
+              requestTime.plusSeconds(60)));
+        }
+      }
+      vehicles.add(new Vehicle("v" + i, location(random), currentTime, passengers, 4));
+    }
+    return vehicles;
+  }
+
+  private static Request request(String id, Instant requestTime, Random random) {
+    LatLng origin = location(random);
+    LatLng destination = location(random);
+    return new Request(id, origin, destination, requestTime,
+        requestTime.plus(Duration.ofMinutes(5)),
+        requestTime.plus(Routing.drivingTime(origin, destination)), Duration.ofMinutes(10));
+  }
+
+  private static LatLng location(Random random) {
+    return new LatLng(40.7 + random.nextDouble() * 0.1, -74.0 + random.nextDouble() * 0.1);
+  }
+}